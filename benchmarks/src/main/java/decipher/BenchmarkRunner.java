@@ -0,0 +1,30 @@
+package decipher;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the benchmarks with the GC profiler always on, so every result has the
+ * allocation rate (gc.alloc.rate.norm is bytes per operation) next to the throughput.</p>
+ * <p>Takes the usual JMH command line, for example just the word counting at 100KB:</p>
+ * <pre>
+ * java -Dngram.dir=/path/to/grams -jar benchmarks/target/benchmarks.jar HotPathBenchmark.wordCount -p length=100000
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    /**
+     * @param args JMH command line options
+     * @throws Exception if the options are bad or a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,77 @@
+package decipher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * <p>The NGrams and cipher texts the benchmarks use.</p>
+ * <p>The NGrams are loaded from the directory in the ngram.dir system property
+ * (the run directory by default). The cipher texts are plaintext.txt (from The Book of Tea)
+ * repeated to the length wanted and enciphered with a fixed random key.</p>
+ */
+final class BenchmarkTexts {
+
+    /** The seed of the key the texts are enciphered with */
+    static final long KEY_SEED = 42;
+
+    private BenchmarkTexts() {
+    }
+
+    /**
+     * @param fileName bigrams.txt or quadgrams.txt
+     * @return the NGram loaded from the ngram.dir directory
+     * @throws Exception if the file is missing
+     */
+    static NGram loadNGram(String fileName) throws Exception {
+        return NGram.load(new File(System.getProperty("ngram.dir", "."), fileName).getPath());
+    }
+
+    /**
+     * @param length the number of letters wanted
+     * @return the plan text repeated to the length
+     * @throws IOException if plaintext.txt can not be read
+     */
+    static String plainText(int length) throws IOException {
+        String plainText;
+        try (InputStream in = BenchmarkTexts.class.getResourceAsStream("/plaintext.txt")) {
+            plainText = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1).trim();
+        }
+        StringBuilder text = new StringBuilder(length);
+        while(text.length() < length) {
+            text.append(plainText, 0, Math.min(plainText.length(), length - text.length()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param length the number of letters wanted
+     * @return the plan text of this length enciphered with the KEY_SEED key
+     * @throws IOException if plaintext.txt can not be read
+     */
+    static String cipherText(int length) throws IOException {
+        return new SubstitutionCipher().subsitute(plainText(length), randomKey(KEY_SEED));
+    }
+
+    /**
+     * @param seed the random seed
+     * @return a random map of the 26 letters
+     */
+    static short[] randomKey(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        short[] key = new short[26];
+        for (short i = 0; i < 26; i++) {
+            key[i] = i;
+        }
+        short temp;
+        for (int i = 25; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            temp = key[i];
+            key[i] = key[j];
+            key[j] = temp;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,102 @@
+package decipher;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmarks the paths run for every map tried: NGram scoring, substituting,
+ * counting words and frequency analysis, over cipher texts of 100 charters to 100KB.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotPathBenchmark {
+
+    /** The cipher text length */
+    @Param({"100", "1000", "10000", "100000"})
+    int length;
+
+    NGram quadGram;
+    NGram biGram;
+    SubstitutionCipher aSubstitutionCipher;
+    String cipherText;
+    byte[] cipherBytes;
+    String plainText;
+    byte[] plainTextBytes;
+    byte[] plainBytes;
+    short[] key;
+
+    @Setup
+    public void setup() throws Exception {
+        quadGram = BenchmarkTexts.loadNGram("quadgrams.txt");
+        biGram = BenchmarkTexts.loadNGram("bigrams.txt");
+        aSubstitutionCipher = new SubstitutionCipher(quadGram, biGram);
+        cipherText = BenchmarkTexts.cipherText(length);
+        aSubstitutionCipher.setCipherText(cipherText);
+        cipherBytes = aSubstitutionCipher.cipherBytes;
+        plainText = BenchmarkTexts.plainText(length);
+        plainTextBytes = plainText.getBytes(StandardCharsets.ISO_8859_1);
+        plainBytes = new byte[length];
+        key = BenchmarkTexts.randomKey(BenchmarkTexts.KEY_SEED + 1);
+    }
+
+    @Benchmark
+    public double quadGramScoreString() {
+        return quadGram.score(plainText);
+    }
+
+    @Benchmark
+    public double quadGramScoreBytes() {
+        return quadGram.score(plainTextBytes, 0, length);
+    }
+
+    @Benchmark
+    public double biGramScoreString() {
+        return biGram.score(plainText);
+    }
+
+    @Benchmark
+    public double biGramScoreBytes() {
+        return biGram.score(plainTextBytes, 0, length);
+    }
+
+    @Benchmark
+    public String subsituteString() {
+        return aSubstitutionCipher.subsitute(cipherText, key);
+    }
+
+    @Benchmark
+    public byte[] subsituteBytes() {
+        aSubstitutionCipher.subsitute(cipherBytes, length, key, plainBytes);
+        return plainBytes;
+    }
+
+    @Benchmark
+    public int wordCountString() {
+        return aSubstitutionCipher.wordCount(plainText);
+    }
+
+    @Benchmark
+    public int wordCountBytes() {
+        return aSubstitutionCipher.wordCount(plainTextBytes, length);
+    }
+
+    @Benchmark
+    public short[] frequencyAnalysis() {
+        return aSubstitutionCipher.frequencyAnalysis(cipherText);
+    }
+}
@@ -0,0 +1,62 @@
+package decipher;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmarks NGramHistogram scoring with the scalar and vector kernels. The vector
+ * kernel falls back to the scalar one if the CPU does not have 256 bit vectors.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class ScoringKernelBenchmark {
+
+    /** The cipher text length */
+    @Param({"100", "1000", "10000", "100000"})
+    int length;
+
+    /** Which kernel */
+    @Param({"scalar", "vector"})
+    String kernel;
+
+    NGramHistogram histogram;
+    short[] key;
+    int swap;
+
+    @Setup
+    public void setup() throws Exception {
+        byte[] cipherBytes = BenchmarkTexts.cipherText(length).getBytes(StandardCharsets.ISO_8859_1);
+        histogram = new NGramHistogram(BenchmarkTexts.loadNGram("quadgrams.txt"), cipherBytes, 0, cipherBytes.length);
+        histogram.setKernel(kernel.equals("scalar") ? new ScalarScoringKernel() : ScoringKernel.create());
+        key = BenchmarkTexts.randomKey(BenchmarkTexts.KEY_SEED + 1);
+    }
+
+    @Benchmark
+    public double score() {
+        return histogram.score(key);
+    }
+
+    @Benchmark
+    public double swapDelta() {
+        // walk through the letter pairs so each call looks at different grams
+        swap = (swap + 1) % (26*25);
+        int i = swap/25;
+        int j = swap % 25;
+        return histogram.swapDelta(key, i, j < i ? j : j + 1);
+    }
+}
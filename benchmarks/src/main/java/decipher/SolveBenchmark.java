@@ -0,0 +1,46 @@
+package decipher;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Benchmarks deciphering a whole cipher text, from frequency analysis to the
+ * plan text, with the NGrams already loaded.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolveBenchmark {
+
+    /** The cipher text length */
+    @Param({"100", "1000", "10000", "100000"})
+    int length;
+
+    SubstitutionCipher aSubstitutionCipher;
+    String cipherText;
+
+    @Setup
+    public void setup() throws Exception {
+        aSubstitutionCipher = new SubstitutionCipher(BenchmarkTexts.loadNGram("quadgrams.txt"),
+                BenchmarkTexts.loadNGram("bigrams.txt"));
+        cipherText = BenchmarkTexts.cipherText(length);
+    }
+
+    @Benchmark
+    public Solution solve() throws Exception {
+        return aSubstitutionCipher.solve(cipherText);
+    }
+}
@@ -0,0 +1,241 @@
+package decipher;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * <p>Measures how often the solver gets the key back, and how long it takes, as the cipher text gets longer.
+ * The JMH benchmarks say how fast, this says whether a faster change still solves as much.</p>
+ *
+ * <p>For each length, trials pieces of the plan text corpora (just the letters, lower cased) are
+ * enciphered with random keys and solved. Everything random comes from the seed: the piece, the key
+ * and the solver's swaps (SubstitutionCipher.setRandom), so a run gives the same solves every time
+ * unless a solve hits the timeout. One CSV line per length is written to stdout:</p>
+ * <ul>
+ *    <li>successRate: the share of solves whose plan text is exactly right</li>
+ *    <li>keyAccuracy: the share of cipher letters (of those in the text) mapped to the right plan letter</li>
+ *    <li>medianMs, p95Ms: the solve times</li>
+ *    <li>medianEvaluations, p95Evaluations: the score evaluations (swaps tried) per solve</li>
+ * </ul>
+ * <pre>
+ * java -Dngram.dir=/path/to/grams -cp benchmarks/target/benchmarks.jar decipher.SolveRateHarness
+ *      [-lengths 50,100,...] [-trials 10] [-seed 42] [-timeoutMs 10000] [corpus.txt ...]
+ * </pre>
+ * <p>With no corpus files the benchmarks' plaintext.txt is used.</p>
+ */
+public class SolveRateHarness {
+
+    /** The lengths solved if not given */
+    static final int[] DEFAULT_LENGTHS = {50, 100, 200, 500, 1000, 2000, 5000};
+    /** The number of solves per length if not given */
+    static final int DEFAULT_TRIALS = 10;
+    /** The seed if not given */
+    static final long DEFAULT_SEED = 42;
+    /** The most time a solve is given if not given, the short texts may never get enough common words */
+    static final long DEFAULT_TIMEOUT_MS = 10000;
+    /** The number of solves done before measuring, so the JIT has compiled the search */
+    static final int WARM_UP_SOLVES = 3;
+    /** The CSV header */
+    static final String HEADER = "length,trials,successRate,keyAccuracy,medianMs,p95Ms,medianEvaluations,p95Evaluations";
+
+    /** The plan text corpora, just lower case letters */
+    private final List<String> corpora;
+    /** Does the solves, with its own seeded random numbers */
+    private final SubstitutionCipher solver;
+    /** The most time a solve is given */
+    private final Duration timeout;
+
+    /**
+     * Constructor
+     * @param corpora the plan texts, anything but letters is dropped
+     * @param quadGram the quadgrams to score with
+     * @param biGram the bigrams to score the first map with
+     * @param timeout the most time a solve is given
+     */
+    public SolveRateHarness(List<String> corpora, NGram quadGram, NGram biGram, Duration timeout) {
+        this.corpora = new ArrayList<>();
+        for (String aCorpus : corpora) {
+            String letters = letters(aCorpus);
+            if(!letters.isEmpty()) {
+                this.corpora.add(letters);
+            }
+        }
+        if(this.corpora.isEmpty()) {
+            throw new IllegalArgumentException("The corpora have no letters");
+        }
+        this.solver = new SubstitutionCipher(quadGram, biGram);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Solves trials cipher texts of one length.
+     * @param length the number of letters of each cipher text
+     * @param trials the number of cipher texts
+     * @param seed the seed, the same seed and length give the same cipher texts and swaps
+     * @return the CSV line
+     * @throws Exception if a solve fails
+     */
+    public String run(int length, int trials, long seed) throws Exception {
+        SplittableRandom random = new SplittableRandom(seed*31 + length);
+        int numSolved = 0;
+        double keyAccuracy = 0;
+        long[] nanos = new long[trials];
+        long[] evaluations = new long[trials];
+        for (int trial = 0; trial < trials; trial++) {
+            String plainText = piece(corpora.get(trial % corpora.size()), length, random);
+            short[] key = BenchmarkTexts.randomKey(random.nextLong());
+            String cipherText = solver.subsitute(plainText, key);
+            solver.setRandom(new SplittableRandom(random.nextLong()));
+
+            long startTime = System.nanoTime();
+            Solution aSolution = solver.solve(cipherText, SolveHandle.withTimeout(timeout));
+            nanos[trial] = System.nanoTime() - startTime;
+            evaluations[trial] = aSolution.getNumEvaluations();
+            if(aSolution.getPlainText().equals(plainText)) {
+                numSolved++;
+            }
+            keyAccuracy += keyAccuracy(cipherText, key, aSolution.getKey());
+        }
+        Arrays.sort(nanos);
+        Arrays.sort(evaluations);
+        return String.format(Locale.ROOT, "%d,%d,%.3f,%.3f,%.1f,%.1f,%d,%d", length, trials,
+                (double)numSolved/trials, keyAccuracy/trials,
+                percentile(nanos, 50)/1000000.0, percentile(nanos, 95)/1000000.0,
+                percentile(evaluations, 50), percentile(evaluations, 95));
+    }
+
+    /**
+     * @param cipherText the cipher text solved
+     * @param key the key it was enciphered with, plan letter to cipher letter
+     * @param found the key the solver found, cipher letter to plan letter
+     * @return the share of the cipher text's different letters that found maps back to the plan letter
+     */
+    static double keyAccuracy(String cipherText, short[] key, short[] found) {
+        boolean[] inText = new boolean[26];
+        for (int i = 0; i < cipherText.length(); i++) {
+            inText[cipherText.charAt(i) - 'a'] = true;
+        }
+        int numLetters = 0;
+        int numRight = 0;
+        for (int plain = 0; plain < 26; plain++) {
+            if(inText[key[plain]]) {
+                numLetters++;
+                if(found[key[plain]] == plain) {
+                    numRight++;
+                }
+            }
+        }
+        return numLetters > 0 ? (double)numRight/numLetters : 1;
+    }
+
+    /**
+     * @param sorted values in order
+     * @param percent 0 to 100
+     * @return the nearest rank percentile
+     */
+    static long percentile(long[] sorted, int percent) {
+        int rank = (int)Math.ceil(percent/100.0*sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * @param corpus the letters of a corpus
+     * @param length the number of letters wanted
+     * @param random picks where the piece starts
+     * @return length letters from a random place, the corpus is repeated if too short
+     */
+    static String piece(String corpus, int length, SplittableRandom random) {
+        StringBuilder piece = new StringBuilder(length);
+        int at = random.nextInt(corpus.length());
+        int len;
+        while(piece.length() < length) {
+            len = Math.min(corpus.length() - at, length - piece.length());
+            piece.append(corpus, at, at + len);
+            at = 0;
+        }
+        return piece.toString();
+    }
+
+    /**
+     * @param text any text
+     * @return just its letters, lower cased
+     */
+    static String letters(String text) {
+        StringBuilder letters = new StringBuilder(text.length());
+        char aChar;
+        for (int i = 0; i < text.length(); i++) {
+            aChar = Character.toLowerCase(text.charAt(i));
+            if(aChar >= 'a' && aChar <= 'z') {
+                letters.append(aChar);
+            }
+        }
+        return letters.toString();
+    }
+
+    /**
+     * Solves a few texts so the first measured ones are not slowed by the JIT.
+     * @throws Exception if a solve fails
+     */
+    void warmUp() throws Exception {
+        SplittableRandom random = new SplittableRandom(DEFAULT_SEED);
+        for (int n = 0; n < WARM_UP_SOLVES; n++) {
+            String cipherText = solver.subsitute(piece(corpora.get(0), 1000, random), BenchmarkTexts.randomKey(n));
+            solver.setRandom(new SplittableRandom(n));
+            solver.solve(cipherText, SolveHandle.withTimeout(timeout));
+        }
+    }
+
+    /**
+     * Writes the CSV to stdout.
+     * @param args [-lengths 50,100,...] [-trials n] [-seed n] [-timeoutMs n] then the corpus files
+     */
+    public static void main(String[] args) {
+        int[] lengths = DEFAULT_LENGTHS;
+        int trials = DEFAULT_TRIALS;
+        long seed = DEFAULT_SEED;
+        long timeoutMs = DEFAULT_TIMEOUT_MS;
+        List<String> corpora = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-lengths":
+                        lengths = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "-trials":
+                        trials = Integer.parseInt(args[++i]);
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "-timeoutMs":
+                        timeoutMs = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        corpora.add(Files.readString(Path.of(args[i]), StandardCharsets.ISO_8859_1));
+                }
+            }
+            if(corpora.isEmpty()) {
+                try (InputStream in = SolveRateHarness.class.getResourceAsStream("/plaintext.txt")) {
+                    corpora.add(new String(in.readAllBytes(), StandardCharsets.ISO_8859_1));
+                }
+            }
+            SolveRateHarness aHarness = new SolveRateHarness(corpora, BenchmarkTexts.loadNGram("quadgrams.txt"),
+                    BenchmarkTexts.loadNGram("bigrams.txt"), Duration.ofMillis(timeoutMs));
+            aHarness.warmUp();
+            System.out.println(HEADER);
+            for (int length : lengths) {
+                System.out.println(aHarness.run(length, trials, seed));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package decipher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Deciphers many cipher texts, streaming them in one per line and the results out one per line.</p>
+ *
+ * <p>Each input line is either just the cipher text, or a JSON object with a "ciphertext"
+ * field and optional "id", "strategy" (hill, anneal or tempering), "timeoutMs" and "maxEvaluations" fields.
+ * A solve with a timeout or maximum gives the best it has so far when it runs out (see SolveHandle).
+ * Each output line is a JSON object with the line number, the id if given, the plaintext, key, score,
+ * wordCount, converged (true if enough common words were found) and elapsedMs (or an error).
+ * Results are written as they finish so they may not be in input order.</p>
+ *
+ * <p>The NGrams are loaded once and shared. Each worker thread keeps its own
+ * SubstitutionCipher. Given a SolutionCache (setCache, off by default) the workers share it so a
+ * cipher text seen before (under any key) is answered without searching. Only a few lines per worker
+ * are read ahead of the workers, and the cache is bounded in bytes, so memory stays the same however
+ * big the input is.</p>
+ */
+public class BatchDecipher implements AutoCloseable {
+
+    /** How many lines per worker can be read ahead of the workers */
+    static final int LINES_AHEAD_PER_WORKER = 2;
+
+    /** The worker threads */
+    private final ThreadPoolExecutor workers;
+    /** One permit per line allowed to be read but not yet written */
+    private final Semaphore inFlight;
+    /** The number of inFlight permits */
+    private final int maxInFlight;
+    /** Each worker thread's solver, sharing the NGrams */
+    private final ThreadLocal<SubstitutionCipher> solvers;
+    /** What all the workers' solves did, null for not counting */
+    private volatile SolverMetrics metrics;
+    /** The patterns all the workers have solved, null for none */
+    private volatile SolutionCache cache;
+
+    /**
+     * Creates the workers.
+     * @param quadGram the quadgrams to score with
+     * @param biGram the bigrams to score the first map with
+     * @param threads the number of cipher texts to decipher at once
+     */
+    public BatchDecipher(NGram quadGram, NGram biGram, int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, not " + threads);
+        }
+        maxInFlight = threads*(1 + LINES_AHEAD_PER_WORKER);
+        inFlight = new Semaphore(maxInFlight);
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxInFlight));
+        solvers = ThreadLocal.withInitial(() -> new SubstitutionCipher(quadGram, biGram));
+    }
+
+    /**
+     * @return what all the workers' solves did so far, can be polled while running, null if not counting
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Count what the workers' solves do, off by default.
+     * @param metrics where the timings and counts go, null for none
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the patterns the workers have solved, to load or save a snapshot, null if not caching
+     */
+    public SolutionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Look cipher texts up before searching and keep the ones solved, off by default.
+     * @param cache the solved patterns shared by the workers, null for none
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Deciphers every line read, writing a result line for each.
+     * Returns once all the results are written.
+     * @param in where the cipher texts come from
+     * @param out where the results go
+     * @throws IOException if reading or writing fails
+     * @throws InterruptedException if interrupted waiting for the workers
+     */
+    public void run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        String aLine;
+        long lineNum = 0;
+        while((aLine = in.readLine()) != null) {
+            lineNum++;
+            if(aLine.isBlank()) {
+                continue;
+            }
+            // wait for a worker to catch up if too far ahead
+            inFlight.acquire();
+            String line = aLine;
+            long num = lineNum;
+            workers.execute(() -> {
+                try {
+                    String result = decipherLine(line, num);
+                    synchronized (out) {
+                        out.write(result);
+                        out.write('\n');
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        // wait for all the results to be written
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    /**
+     * Deciphers one input line.
+     * @param aLine the cipher text or a JSON object holding it
+     * @param lineNum the line number
+     * @return the JSON result line
+     */
+    String decipherLine(String aLine, long lineNum) {
+        return decipherLine(aLine, lineNum, new SolveHandle());
+    }
+
+    /**
+     * Deciphers one input line, the line's timeoutMs and maxEvaluations can only lower the handle's limits.
+     * @param aLine the cipher text or a JSON object holding it
+     * @param lineNum the line number
+     * @param handle bounds the solve, and can be cancelled from another thread
+     * @return the JSON result line
+     */
+    String decipherLine(String aLine, long lineNum, SolveHandle handle) {
+        StringBuilder result = new StringBuilder("{\"line\":").append(lineNum);
+        try {
+            String cipherText = aLine;
+            SearchStrategy strategy = null;
+            Duration timeout = null;
+            long maxEvaluations = SolveHandle.NO_LIMIT;
+            if(aLine.trim().startsWith("{")) {
+                String id = Json.getField(aLine, "id");
+                if(id != null) {
+                    result.append(",\"id\":").append(Json.quote(id));
+                }
+                cipherText = Json.getField(aLine, "ciphertext");
+                if(cipherText == null) {
+                    throw new IllegalArgumentException("No ciphertext field");
+                }
+                String strategyName = Json.getField(aLine, "strategy");
+                if(strategyName != null) {
+                    strategy = SearchStrategy.named(strategyName);
+                }
+                String timeoutMs = Json.getField(aLine, "timeoutMs");
+                if(timeoutMs != null) {
+                    timeout = Duration.ofMillis(Long.parseLong(timeoutMs));
+                }
+                String maxEvaluationsText = Json.getField(aLine, "maxEvaluations");
+                if(maxEvaluationsText != null) {
+                    maxEvaluations = Long.parseLong(maxEvaluationsText);
+                }
+            }
+            long startTime = System.nanoTime();
+            SubstitutionCipher solver = solvers.get();
+            solver.setMetrics(metrics);
+            solver.setCache(cache);
+            handle.lowerLimits(timeout, maxEvaluations);
+            Solution aSolution = solver.solve(cipherText.toLowerCase(Locale.ROOT),
+                    strategy != null ? strategy : solver.strategy, handle);
+            long endtime = System.nanoTime();
+            result.append(",\"plaintext\":").append(Json.quote(aSolution.getPlainText()))
+                .append(",\"key\":").append(Json.quote(aSolution.keyString()))
+                .append(",\"score\":").append(aSolution.getScore())
+                .append(",\"wordCount\":").append(aSolution.getWordCount())
+                .append(",\"converged\":").append(aSolution.isConverged())
+                .append(",\"evaluations\":").append(aSolution.getNumEvaluations())
+                .append(",\"elapsedMs\":").append(String.format(Locale.ROOT, "%.3f", (endtime-startTime)/1000000.0));
+        } catch (Exception e) {
+            result.append(",\"error\":").append(Json.quote(String.valueOf(e.getMessage())));
+        }
+        return result.append('}').toString();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    /**
+     * Deciphers a file (or stdin) of cipher texts writing JSON lines to stdout.
+     * @param args the input file or - for stdin (the default), then optionally the number of threads,
+     *             then optionally a cache snapshot file loaded before and saved after
+     */
+    public static void main(String[] args) {
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        try (Reader aReader = args.length > 0 && !args[0].equals("-")
+                    ? new FileReader(args[0], StandardCharsets.UTF_8)
+                    : new InputStreamReader(System.in, StandardCharsets.UTF_8);
+             BufferedReader in = new BufferedReader(aReader);
+             Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+             BatchDecipher aBatch = new BatchDecipher(NGram.load("quadgrams.txt"), NGram.load("bigrams.txt"), threads)) {
+            aBatch.setMetrics(new SolverMetrics());
+            aBatch.setCache(new SolutionCache());
+            Path snapshot = args.length > 2 ? Path.of(args[2]) : null;
+            if(snapshot != null) {
+                aBatch.getCache().load(snapshot);
+            }
+            aBatch.run(in, out);
+            if(snapshot != null) {
+                aBatch.getCache().save(snapshot);
+            }
+            System.err.println(aBatch.getMetrics().snapshot());
+            System.err.println("cache " + aBatch.getCache());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package decipher;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Holds the best Solution found so far by any of the climbing threads.</p>
+ * <p>No locks are used, a better solution is swapped in with compare and set
+ * so climbers never wait on each other.</p>
+ */
+public class BestSolution {
+    /** The best solution so far, null until the first is offered */
+    private final AtomicReference<Solution> best = new AtomicReference<>();
+
+    /**
+     * Keeps the solution if it is better than the best so far.
+     * @param aSolution the solution a climber found
+     * @return true if this is now the best solution
+     */
+    public boolean offer(Solution aSolution) {
+        Solution current;
+        do {
+            current = best.get();
+            if(!aSolution.isBetterThan(current)) {
+                return false;
+            }
+        } while(!best.compareAndSet(current, aSolution));
+        return true;
+    }
+
+    /**
+     * @return the best solution so far, or null if none yet
+     */
+    public Solution get() {
+        return best.get();
+    }
+}
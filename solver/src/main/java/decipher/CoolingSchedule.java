@@ -0,0 +1,42 @@
+package decipher;
+
+/**
+ * <p>How the temperature of simulated annealing drops from the start temperature
+ * to the end temperature over the steps of a search.</p>
+ */
+public enum CoolingSchedule {
+
+    /** Drops by the same fraction each step, spending more steps at the cold end */
+    GEOMETRIC {
+        @Override
+        double temperature(long step, long steps, double start, double end) {
+            return start*Math.pow(end/start, (double)step/steps);
+        }
+    },
+    /** Drops by the same amount each step */
+    LINEAR {
+        @Override
+        double temperature(long step, long steps, double start, double end) {
+            return start + (end - start)*step/steps;
+        }
+    },
+    /**
+     * Drops with the log of the step (start*ln(2)/ln(step+2)), very slow once past the
+     * first steps so it stays warm a long time; it never goes below the end temperature.
+     */
+    LOGARITHMIC {
+        @Override
+        double temperature(long step, long steps, double start, double end) {
+            return Math.max(end, start*Math.log(2)/Math.log(step + 2));
+        }
+    };
+
+    /**
+     * @param step the step number (0 to steps)
+     * @param steps the number of steps in the search
+     * @param start the temperature at the first step
+     * @param end the temperature at the last step
+     * @return the temperature at this step
+     */
+    abstract double temperature(long step, long steps, double start, double end);
+}
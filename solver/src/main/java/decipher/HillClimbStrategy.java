@@ -0,0 +1,67 @@
+package decipher;
+
+import java.util.Arrays;
+
+/**
+ * <p>The hill climb SubstitutionCipher has always done.</p>
+ * <p>Randomly select two points on the map to swop and keep the swap if it improves
+ * the score, until maxNoChange swaps in a row do not help. Only ever going up hill it
+ * stops at the first top it reaches, which is why the solvers do overs.</p>
+ */
+public class HillClimbStrategy implements SearchStrategy {
+
+    /** Number of random swaps in a row that do not help before the climb stops */
+    private final int maxNoChange;
+
+    /**
+     * Climbs until SubstitutionCipher.MAX_NO_CHANGE swaps in a row do not help.
+     */
+    public HillClimbStrategy() {
+        this(SubstitutionCipher.MAX_NO_CHANGE);
+    }
+
+    /**
+     * @param maxNoChange number of random swaps in a row that do not help before the climb stops
+     */
+    public HillClimbStrategy(int maxNoChange) {
+        this.maxNoChange = maxNoChange;
+    }
+
+    /**
+     * One climb from the start map. The word count is the best of the maps kept.
+     */
+    @Override
+    public Solution search(SearchContext context, short[] startMap) {
+        long startEvaluations = context.getNumEvaluations();
+        short[] bestMap = Arrays.copyOf(startMap, 26);
+        double bestScore = context.score(bestMap);
+        int bestWordCount = context.wordCount(bestMap);
+        double aScore;
+        int numNoChange = 0;
+        int i,j,thisWordCount;
+        while(numNoChange<maxNoChange && !context.isStopped(bestMap, bestScore)) {
+            // randomly swap two charter mappings
+            i = context.getRandom().nextInt(0, 26);
+            j = context.getRandom().nextInt(0, 26);
+            while(i==j)
+                j = context.getRandom().nextInt(0, 26);
+
+            aScore = bestScore + context.swapDelta(bestMap, i, j);
+            if(aScore > bestScore) {
+                context.swap(bestMap, i, j);
+                bestScore = aScore;
+                numNoChange = 0;
+
+                // only deciphering when a swap is kept, to count the words
+                thisWordCount = context.wordCount(bestMap);
+                if(thisWordCount>bestWordCount) {
+                    bestWordCount=thisWordCount;
+                }
+            }else{
+                numNoChange++;
+            }
+        }
+        return new Solution(bestMap, bestScore, bestWordCount, null,
+                context.getNumEvaluations() - startEvaluations);
+    }
+}
@@ -0,0 +1,152 @@
+package decipher;
+
+/**
+ * <p>Just enough JSON for the line protocols (one flat object per line):
+ * quoting strings and reading the top level fields of an object.</p>
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * @param text the text to quote
+     * @return the text as a JSON string, in quotes with special charters escaped
+     */
+    static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        char aChar;
+        for (int i = 0; i < text.length(); i++) {
+            aChar = text.charAt(i);
+            switch (aChar) {
+                case '"':  quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if(aChar < ' ') {
+                        quoted.append(String.format("\\u%04x", (int)aChar));
+                    } else {
+                        quoted.append(aChar);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Gets a top level field of a JSON object.
+     * @param json a JSON object like {"id":7,"ciphertext":"qbuf"}
+     * @param name the field name
+     * @return the string value without quotes, other values (numbers, true, nested objects)
+     *         as their JSON text, or null if there is no such field
+     * @throws IllegalArgumentException if the json is not an object
+     */
+    static String getField(String json, String name) {
+        int[] at = {skipSpace(json, 0)};
+        expect(json, at, '{');
+        at[0] = skipSpace(json, at[0]);
+        if(at[0] < json.length() && json.charAt(at[0]) == '}') {
+            return null;
+        }
+        while(true) {
+            at[0] = skipSpace(json, at[0]);
+            String aName = readString(json, at);
+            at[0] = skipSpace(json, at[0]);
+            expect(json, at, ':');
+            at[0] = skipSpace(json, at[0]);
+            String aValue;
+            if(at[0] < json.length() && json.charAt(at[0]) == '"') {
+                aValue = readString(json, at);
+            } else {
+                int start = at[0];
+                skipValue(json, at);
+                aValue = json.substring(start, at[0]).trim();
+            }
+            if(aName.equals(name)) {
+                return aValue;
+            }
+            at[0] = skipSpace(json, at[0]);
+            if(at[0] < json.length() && json.charAt(at[0]) == '}') {
+                return null;
+            }
+            expect(json, at, ',');
+        }
+    }
+
+    private static int skipSpace(String json, int at) {
+        while(at < json.length() && Character.isWhitespace(json.charAt(at))) {
+            at++;
+        }
+        return at;
+    }
+
+    private static void expect(String json, int[] at, char aChar) {
+        if(at[0] >= json.length() || json.charAt(at[0]) != aChar) {
+            throw new IllegalArgumentException(String.format("Expected '%c' at %d in %.60s", aChar, at[0], json));
+        }
+        at[0]++;
+    }
+
+    /** Reads a quoted string starting at at[0], leaving at[0] after the closing quote */
+    private static String readString(String json, int[] at) {
+        expect(json, at, '"');
+        StringBuilder aString = new StringBuilder();
+        char aChar;
+        while(at[0] < json.length()) {
+            aChar = json.charAt(at[0]++);
+            if(aChar == '"') {
+                return aString.toString();
+            }
+            if(aChar != '\\') {
+                aString.append(aChar);
+                continue;
+            }
+            if(at[0] >= json.length()) {
+                break;
+            }
+            aChar = json.charAt(at[0]++);
+            switch (aChar) {
+                case 'n': aString.append('\n'); break;
+                case 'r': aString.append('\r'); break;
+                case 't': aString.append('\t'); break;
+                case 'b': aString.append('\b'); break;
+                case 'f': aString.append('\f'); break;
+                case 'u':
+                    if(at[0] + 4 > json.length()) {
+                        throw new IllegalArgumentException("Bad \\u escape in " + json);
+                    }
+                    aString.append((char)Integer.parseInt(json.substring(at[0], at[0] + 4), 16));
+                    at[0] += 4;
+                    break;
+                default: aString.append(aChar);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string in " + json);
+    }
+
+    /** Skips a number, literal, object or array, leaving at[0] after it */
+    private static void skipValue(String json, int[] at) {
+        int depth = 0;
+        char aChar;
+        while(at[0] < json.length()) {
+            aChar = json.charAt(at[0]);
+            if(aChar == '"') {
+                readString(json, at);
+                continue;
+            }
+            if(aChar == '{' || aChar == '[') {
+                depth++;
+            } else if(aChar == '}' || aChar == ']') {
+                if(depth == 0) {
+                    return;
+                }
+                depth--;
+            } else if(aChar == ',' && depth == 0) {
+                return;
+            }
+            at[0]++;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package decipher;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>Everything a solver needs to know about one language: its quadgrams and bigrams,
+ * the order its letters are most used in (for the first map) and its common words (to
+ * tell when a climb worked).</p>
+ *
+ * <p>The files are loaded the first time they are needed and then shared, so a model can
+ * be given to any number of solvers on any threads. Ranking a cipher text against a
+ * model only needs the bigrams, which are small; the quadgrams are only loaded for a
+ * language that is actually searched.</p>
+ */
+public class LanguageModel {
+
+    /** The name of the language, like en */
+    private final String name;
+    /** The quadgrams file */
+    private final String quadGramFile;
+    /** The bigrams file */
+    private final String biGramFile;
+    /** The common words, null until loaded from wordsFile */
+    private List<String> words;
+    /** The common words file (one word a line), null if the words were given */
+    private final String wordsFile;
+    /** The letters most used first, null to work it out from the bigrams */
+    private short[] standOrder;
+
+    /** Loaded when first needed */
+    private NGram quadGram;
+    private NGram biGram;
+    private WordMatcher wordMatcher;
+    /** The letter chances from most to least used */
+    private double[] frequencyProfile;
+    /** The chance two letters picked at random are the same */
+    private double coincidence;
+
+    /**
+     * Creates a model with its words given.
+     * @param name the name of the language, like en
+     * @param quadGramFile the quadgrams file
+     * @param biGramFile the bigrams file
+     * @param words the common words
+     * @param standOrder the letters (0 to 25) most used first, null to work it out from the bigrams
+     */
+    public LanguageModel(String name, String quadGramFile, String biGramFile, List<String> words, short[] standOrder) {
+        this.name = name;
+        this.quadGramFile = quadGramFile;
+        this.biGramFile = biGramFile;
+        this.words = words;
+        this.wordsFile = null;
+        this.standOrder = standOrder;
+    }
+
+    /**
+     * Creates a model from a directory holding quadgrams.txt, bigrams.txt and words.txt
+     * (the common words, one a line). The letter order is worked out from the bigrams.
+     * @param name the name of the language, like de
+     * @param directory the directory of the files
+     */
+    public LanguageModel(String name, String directory) {
+        this.name = name;
+        this.quadGramFile = Path.of(directory, "quadgrams.txt").toString();
+        this.biGramFile = Path.of(directory, "bigrams.txt").toString();
+        this.wordsFile = Path.of(directory, "words.txt").toString();
+    }
+
+    /**
+     * @return English, using quadgrams.txt and bigrams.txt, COMMON_WORDS and the STAND_ORDER
+     */
+    public static LanguageModel english() {
+        return new LanguageModel("en", "quadgrams.txt", "bigrams.txt", SubstitutionCipher.COMMON_WORDS,
+                SubstitutionCipher.ENGLISH_ORDER);
+    }
+
+    /**
+     * @return the name of the language
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the quadgrams, loaded if not yet
+     * @throws Exception if the file can not be loaded
+     */
+    public synchronized NGram getQuadGram() throws Exception {
+        if(quadGram == null) {
+            quadGram = NGram.load(quadGramFile);
+        }
+        return quadGram;
+    }
+
+    /**
+     * @return the bigrams, loaded if not yet
+     * @throws Exception if the file can not be loaded
+     */
+    public synchronized NGram getBiGram() throws Exception {
+        if(biGram == null) {
+            biGram = NGram.load(biGramFile);
+            double[] frequencies = biGram.letterFrequencies();
+            frequencyProfile = frequencies.clone();
+            Arrays.sort(frequencyProfile);
+            reverse(frequencyProfile);
+            coincidence = 0;
+            for (double aFrequency : frequencies) {
+                coincidence += aFrequency*aFrequency;
+            }
+            if(standOrder == null) {
+                List<Short> letters = new ArrayList<>();
+                for (short letter = 0; letter < 26; letter++) {
+                    letters.add(letter);
+                }
+                letters.sort(Comparator.comparingDouble((Short letter) -> frequencies[letter]).reversed());
+                standOrder = new short[26];
+                for (int i = 0; i < 26; i++) {
+                    standOrder[i] = letters.get(i);
+                }
+            }
+        }
+        return biGram;
+    }
+
+    /**
+     * @return the common words compiled for counting, loaded if not yet
+     * @throws Exception if the words file can not be read
+     */
+    public synchronized WordMatcher getWordMatcher() throws Exception {
+        if(wordMatcher == null) {
+            if(words == null) {
+                words = new ArrayList<>();
+                for (String aWord : Files.readAllLines(Path.of(wordsFile))) {
+                    aWord = aWord.trim().toLowerCase(Locale.ROOT);
+                    if(!aWord.isEmpty()) {
+                        words.add(aWord);
+                    }
+                }
+            }
+            wordMatcher = new WordMatcher(words);
+        }
+        return wordMatcher;
+    }
+
+    /**
+     * @return the letters (0 to 25) most used first, do not change it
+     * @throws Exception if the bigrams can not be loaded to work it out
+     */
+    public synchronized short[] getStandOrder() throws Exception {
+        getBiGram();
+        return standOrder;
+    }
+
+    /**
+     * @return the letter chances from most to least used, do not change it
+     * @throws Exception if the bigrams can not be loaded
+     */
+    public synchronized double[] getFrequencyProfile() throws Exception {
+        getBiGram();
+        return frequencyProfile;
+    }
+
+    /**
+     * @return the index of coincidence, the chance two letters picked at random are the same
+     * @throws Exception if the bigrams can not be loaded
+     */
+    public synchronized double getCoincidence() throws Exception {
+        getBiGram();
+        return coincidence;
+    }
+
+    /**
+     * Reverses an array in place.
+     * @param values the array
+     */
+    static void reverse(double[] values) {
+        double temp;
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            temp = values[i];
+            values[i] = values[j];
+            values[j] = temp;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
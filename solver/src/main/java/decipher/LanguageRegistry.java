@@ -0,0 +1,212 @@
+package decipher;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * <p>The languages cipher texts may be in, and picking which ones are worth searching.</p>
+ *
+ * <p>A substitution cipher changes which letter is which but not how often letters are
+ * used, so the letter counts sorted from most to least (the frequency profile) and the
+ * index of coincidence (the chance two letters picked at random are the same) are the
+ * same for the cipher text as for its plan text. {@link #rank(String)} compares these to
+ * each language, which takes one pass over the cipher text, and
+ * {@link #solve(String, int)} only searches the best few languages.</p>
+ *
+ * <p>Models are registered once and shared, loading their files when first used.</p>
+ */
+public class LanguageRegistry {
+
+    /** The languages by name, in the order registered */
+    private final Map<String, LanguageModel> models = new LinkedHashMap<>();
+
+    /**
+     * How close a cipher text is to a language.
+     */
+    @Getter
+    public static class Candidate {
+        /** The language */
+        private final LanguageModel language;
+        /** How far the cipher text's statistics are from the language's, the lower the closer */
+        private final double distance;
+
+        Candidate(LanguageModel language, double distance) {
+            this.language = language;
+            this.distance = distance;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s:%.4f", language.getName(), distance);
+        }
+    }
+
+    /**
+     * The solution of a cipher text and the language it was found in.
+     */
+    @Getter
+    public static class Result {
+        /** The language solved in */
+        private final LanguageModel language;
+        /** The solution */
+        private final Solution solution;
+
+        Result(LanguageModel language, Solution solution) {
+            this.language = language;
+            this.solution = solution;
+        }
+    }
+
+    /**
+     * @return a registry holding just English (en)
+     */
+    public static LanguageRegistry english() {
+        LanguageRegistry aRegistry = new LanguageRegistry();
+        aRegistry.register(LanguageModel.english());
+        return aRegistry;
+    }
+
+    /**
+     * Adds a language, replacing any of the same name.
+     * @param language the language model
+     */
+    public synchronized void register(LanguageModel language) {
+        models.put(language.getName(), language);
+    }
+
+    /**
+     * @param name the name of the language, like en
+     * @return the language or null if not registered
+     */
+    public synchronized LanguageModel get(String name) {
+        return models.get(name);
+    }
+
+    /**
+     * @return the languages, in the order registered
+     */
+    public synchronized List<LanguageModel> getLanguages() {
+        return new ArrayList<>(models.values());
+    }
+
+    /**
+     * Ranks the languages by how close the cipher text's frequency profile and index of
+     * coincidence are to theirs. This loads each language's bigrams, but not its quadgrams.
+     * @param cipherText the cipher text, case and anything but letters are ignored
+     * @return the languages closest first
+     * @throws Exception if a language's bigrams can not be loaded
+     */
+    public List<Candidate> rank(String cipherText) throws Exception {
+        int[] counts = new int[26];
+        long numLetters = 0;
+        int letter;
+        for (int i = 0; i < cipherText.length(); i++) {
+            letter = Character.toLowerCase(cipherText.charAt(i)) - 'a';
+            if(letter >= 0 && letter < 26) {
+                counts[letter]++;
+                numLetters++;
+            }
+        }
+        double[] profile = new double[26];
+        double coincidence = 0;
+        for (letter = 0; letter < 26; letter++) {
+            profile[letter] = numLetters > 0 ? (double)counts[letter]/numLetters : 0;
+            coincidence += (double)counts[letter]*(counts[letter] - 1);
+        }
+        coincidence = numLetters > 1 ? coincidence/(numLetters*(numLetters - 1)) : 0;
+        Arrays.sort(profile);
+        LanguageModel.reverse(profile);
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (LanguageModel aLanguage : getLanguages()) {
+            candidates.add(new Candidate(aLanguage, distance(profile, coincidence, aLanguage)));
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::getDistance));
+        return candidates;
+    }
+
+    /**
+     * The distance is the sum of the differences of the sorted letter chances plus how
+     * far off the index of coincidence is (as a fraction of the language's).
+     * @param profile the cipher text's letter chances from most to least used
+     * @param coincidence the cipher text's index of coincidence
+     * @param aLanguage the language
+     * @return the distance, 0 for the same
+     * @throws Exception if the language's bigrams can not be loaded
+     */
+    static double distance(double[] profile, double coincidence, LanguageModel aLanguage) throws Exception {
+        double[] languageProfile = aLanguage.getFrequencyProfile();
+        double distance = 0;
+        for (int i = 0; i < 26; i++) {
+            distance += Math.abs(profile[i] - languageProfile[i]);
+        }
+        return distance + Math.abs(coincidence - aLanguage.getCoincidence())/aLanguage.getCoincidence();
+    }
+
+    /**
+     * Searches the cipher text in the closest languages, one after the other, stopping at
+     * the first that finds its target number of common words.
+     * @param cipherText the lower case cipher text
+     * @param maxCandidates the most languages to search
+     * @return the first converged solution, or else that of the closest language,
+     *         null if no languages are registered
+     * @throws IllegalArgumentException if maxCandidates is less than 1
+     * @throws Exception if a language's files can not be loaded
+     */
+    public Result solve(String cipherText, int maxCandidates) throws Exception {
+        if(maxCandidates < 1) {
+            throw new IllegalArgumentException("maxCandidates must be at least 1, not " + maxCandidates);
+        }
+        List<Candidate> candidates = rank(cipherText);
+        Result first = null;
+        for (int i = 0; i < Math.min(maxCandidates, candidates.size()); i++) {
+            LanguageModel aLanguage = candidates.get(i).getLanguage();
+            SubstitutionCipher aSolver = new SubstitutionCipher();
+            aSolver.setLanguage(aLanguage);
+            Result aResult = new Result(aLanguage, aSolver.solve(cipherText));
+            if(aResult.getSolution().isConverged()) {
+                return aResult;
+            }
+            if(first == null) {
+                first = aResult;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Ranks and solves cipher texts, one a line from stdin, in English and the languages given.
+     * @param args name=directory for each other language (a directory holding quadgrams.txt,
+     *             bigrams.txt and words.txt)
+     */
+    public static void main(String[] args) {
+        LanguageRegistry aRegistry = english();
+        for (String anArg : args) {
+            int equals = anArg.indexOf('=');
+            aRegistry.register(new LanguageModel(anArg.substring(0, equals), anArg.substring(equals + 1)));
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String aLine;
+            while((aLine = in.readLine()) != null) {
+                String cipherText = aLine.trim().toLowerCase(Locale.ROOT);
+                if(cipherText.isEmpty()) {
+                    continue;
+                }
+                System.out.printf("ranking->%s<-\n", aRegistry.rank(cipherText));
+                Result aResult = aRegistry.solve(cipherText, 1);
+                System.out.printf("%s->%s<-\n", aResult.getLanguage().getName(), aResult.getSolution().getPlainText());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package decipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>Deciphers files too big to hold as one String, using the same memory whatever the size.</p>
+ * <ol>
+ *    <li>Maps the file and counts its letters (upper or lower case) in one pass</li>
+ *    <li>Takes a sample of sampleLetters letters, lower cased, from NUM_SAMPLE_RUNS runs
+ *    spread evenly through the file so one odd part (a header, a table) does not decide the key,
+ *    with a space between runs so no quadgram is scored across the gap</li>
+ *    <li>Solves the sample with a SubstitutionCipher</li>
+ *    <li>Deciphers the whole file chunk by chunk to the output, keeping the case of each
+ *    letter and passing everything else (spaces, punctuation, digits, bytes above 127) through</li>
+ * </ol>
+ * <p>Bytes are treated as ASCII letters, so UTF-8 and ISO-8859-1 files come out in the same encoding.
+ * A file with no letters is copied as it is, there is nothing to solve.</p>
+ */
+public class LargeFileDecipher {
+
+    /** How much of the file is mapped at once */
+    static final int MAP_WINDOW = 64*1024*1024;
+    /** The number of runs the sample is taken in */
+    static final int NUM_SAMPLE_RUNS = 16;
+    /** Default number of letters solved */
+    static final int DEFAULT_SAMPLE_LETTERS = 5000;
+    /** Default size of the chunks deciphered and written */
+    static final int DEFAULT_CHUNK_SIZE = 1024*1024;
+
+    /** Solves the sample */
+    private final SubstitutionCipher solver;
+    /** The most letters solved */
+    private int sampleLetters = DEFAULT_SAMPLE_LETTERS;
+    /** The size of the chunks deciphered and written */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    /** How much of the file is mapped at once, only smaller in tests */
+    private int mapWindow = MAP_WINDOW;
+
+    /**
+     * Constructor
+     * @param quadGram the quadgrams to score with
+     * @param biGram the bigrams to score the first map with
+     */
+    public LargeFileDecipher(NGram quadGram, NGram biGram) {
+        this.solver = new SubstitutionCipher(quadGram, biGram);
+    }
+
+    /**
+     * @return the solver used for the sample, to set its strategy, words or metrics
+     */
+    public SubstitutionCipher getSolver() {
+        return solver;
+    }
+
+    /**
+     * More letters make the key surer but the solve slower.
+     * @param sampleLetters the most letters to solve
+     */
+    public void setSampleLetters(int sampleLetters) {
+        if(sampleLetters < 1) {
+            throw new IllegalArgumentException("sampleLetters must be at least 1, not " + sampleLetters);
+        }
+        this.sampleLetters = sampleLetters;
+    }
+
+    /**
+     * @param chunkSize the size of the chunks deciphered and written
+     */
+    public void setChunkSize(int chunkSize) {
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1, not " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Used by the tests to cross window edges without huge files.
+     * @param mapWindow how much of the file is mapped at once
+     */
+    void setMapWindow(int mapWindow) {
+        if(mapWindow < 1) {
+            throw new IllegalArgumentException("mapWindow must be at least 1, not " + mapWindow);
+        }
+        this.mapWindow = mapWindow;
+    }
+
+    /**
+     * Deciphers one file to another.
+     * @param cipherFile the cipher text
+     * @param plainFile where the plan text goes, replaced if there
+     * @return the key found for the sample, its plainText is the sample deciphered
+     * @throws Exception if the files can not be read or written or the NGram files can not be loaded
+     */
+    public Solution decipher(Path cipherFile, Path plainFile) throws Exception {
+        try (FileChannel out = FileChannel.open(plainFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return decipher(cipherFile, out, null);
+        }
+    }
+
+    /**
+     * Deciphers a file to a channel.
+     * @param cipherFile the cipher text
+     * @param out where the plan text goes
+     * @param handle what bounds the solve of the sample, null for nothing
+     * @return the key found for the sample, its plainText is the sample deciphered;
+     *         for a file with no letters the key that changes nothing, not converged
+     * @throws Exception if the files can not be read or written or the NGram files can not be loaded
+     */
+    public Solution decipher(Path cipherFile, WritableByteChannel out, SolveHandle handle) throws Exception {
+        try (FileChannel in = FileChannel.open(cipherFile, StandardOpenOption.READ)) {
+            long numLetters = countLetters(in);
+            if(numLetters == 0) {
+                short[] identity = new short[26];
+                for (short letter = 0; letter < 26; letter++) {
+                    identity[letter] = letter;
+                }
+                decipher(in, out, identity);
+                return new Solution(identity, 0, 0, "", 0, false);
+            }
+            String sample = sample(in, numLetters);
+            Solution aSolution = handle != null ? solver.solve(sample, handle) : solver.solve(sample);
+            decipher(in, out, aSolution.getKey());
+            return aSolution;
+        }
+    }
+
+    /**
+     * @param in the cipher text
+     * @return the number of letters, upper or lower case
+     * @throws IOException if the file can not be read
+     */
+    long countLetters(FileChannel in) throws IOException {
+        long numLetters = 0;
+        long size = in.size();
+        for (long position = 0; position < size; position += mapWindow) {
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapWindow, size - position));
+            while(window.hasRemaining()) {
+                if(lowerCase(window.get()) >= 0) {
+                    numLetters++;
+                }
+            }
+        }
+        return numLetters;
+    }
+
+    /**
+     * Takes up to sampleLetters lower case letters from NUM_SAMPLE_RUNS runs spread through the file.
+     * Runs that are not next to each other in the file are split by a space, which the
+     * NGramHistogram skips, so the letters either side of a gap are not scored as if they were together.
+     * @param in the cipher text
+     * @param numLetters the number of letters in the file
+     * @return the sample, lower case letters with a space between runs
+     * @throws IOException if the file can not be read
+     */
+    String sample(FileChannel in, long numLetters) throws IOException {
+        int sampleSize = (int)Math.min(sampleLetters, numLetters);
+        int runLength = Math.max(1, sampleSize/NUM_SAMPLE_RUNS);
+        int numRuns = (sampleSize + runLength - 1)/runLength;
+        // the letters and a space between each run
+        byte[] sample = new byte[sampleSize + Math.max(0, numRuns - 1)];
+        int numBytes = 0;
+        int numTaken = 0;
+        long letterNum = 0;
+        int run = 0;
+        // the letter number each run starts at, runs are evenly spaced through the letters
+        long runStart = 0;
+        byte letter;
+        long size = in.size();
+        for (long position = 0; position < size && numTaken < sampleSize; position += mapWindow) {
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapWindow, size - position));
+            while(window.hasRemaining() && numTaken < sampleSize) {
+                letter = lowerCase(window.get());
+                if(letter < 0) {
+                    continue;
+                }
+                if(letterNum >= runStart) {
+                    sample[numBytes++] = letter;
+                    numTaken++;
+                    if(numTaken == Math.min(sampleSize, (run + 1)*runLength)) {
+                        run++;
+                        runStart = (numLetters - runLength)*run/Math.max(1, numRuns - 1);
+                        runStart = Math.max(runStart, letterNum + 1);
+                        if(numTaken < sampleSize && runStart > letterNum + 1) {
+                            sample[numBytes++] = ' ';
+                        }
+                    }
+                }
+                letterNum++;
+            }
+        }
+        return new String(sample, 0, numBytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Deciphers the whole file chunk by chunk, keeping the case of letters.
+     * @param in the cipher text
+     * @param out where the plan text goes
+     * @param map the key
+     * @throws IOException if the file can not be read or written
+     */
+    void decipher(FileChannel in, WritableByteChannel out, short[] map) throws IOException {
+        byte[] table = decipherTable(map);
+        byte[] chunk = new byte[chunkSize];
+        ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+        long size = in.size();
+        int len;
+        for (long position = 0; position < size; position += mapWindow) {
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapWindow, size - position));
+            while(window.hasRemaining()) {
+                len = Math.min(chunk.length, window.remaining());
+                window.get(chunk, 0, len);
+                for (int i = 0; i < len; i++) {
+                    chunk[i] = table[chunk[i] & 0xff];
+                }
+                chunkBuffer.clear().limit(len);
+                while(chunkBuffer.hasRemaining()) {
+                    out.write(chunkBuffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param map the key
+     * @return what each byte deciphers to: letters by the key keeping their case, all else the same
+     */
+    static byte[] decipherTable(short[] map) {
+        byte[] table = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = (byte)i;
+        }
+        for (int letter = 0; letter < 26; letter++) {
+            table['a' + letter] = (byte)('a' + map[letter]);
+            table['A' + letter] = (byte)('A' + map[letter]);
+        }
+        return table;
+    }
+
+    /**
+     * @param aByte a byte of the file
+     * @return the lower case letter or -1 if not a letter
+     */
+    private static byte lowerCase(byte aByte) {
+        if(aByte >= 'a' && aByte <= 'z') {
+            return aByte;
+        }
+        if(aByte >= 'A' && aByte <= 'Z') {
+            return (byte)(aByte + ('a' - 'A'));
+        }
+        return -1;
+    }
+
+    /**
+     * Deciphers a big file.
+     * @param args the cipher text file, the plan text file, then optionally the number of letters to solve
+     */
+    public static void main(String[] args) {
+        if(args.length < 2) {
+            System.err.println("usage: LargeFileDecipher cipherFile plainFile [sampleLetters]");
+            return;
+        }
+        try {
+            LargeFileDecipher aDecipher = new LargeFileDecipher(NGram.load("quadgrams.txt"), NGram.load("bigrams.txt"));
+            if(args.length > 2) {
+                aDecipher.setSampleLetters(Integer.parseInt(args[2]));
+            }
+            long startTime = System.nanoTime();
+            Solution aSolution = aDecipher.decipher(Path.of(args[0]), Path.of(args[1]));
+            long endtime = System.nanoTime();
+            System.err.printf("Time taken: %f seconds\n",((double)(endtime-startTime))/1000000000.0);
+            System.err.printf("key->%s<- bestWordCount->%d<- converged->%b<-\n",
+                    aSolution.keyString(), aSolution.getWordCount(), aSolution.isConverged());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
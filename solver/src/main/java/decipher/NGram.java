@@ -0,0 +1,374 @@
+package decipher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+
+/**
+ * <p>
+ * Reads in a Ngram text file (bigrams.txt, trigram.txt, or quadgram.txt) and uses 
+ * the information to score different deciphered text.
+ * Code adaped from practialcryptography.com
+ * </p>
+ * Example first few lines of the quadgram.txt file: 
+ * <pre>
+ * TION 13168375
+ * NTHE 11234972
+ * THER 10218035
+ * THAT 8980536
+ * OFTH 8132597
+ * </pre>
+ * <p>The log values are kept in a flat array indexed by the gram's letters packed
+ * in base 26 (tion is ((t*26 + i)*26 + o)*26 + n), so a lookup is just array access.</p>
+ * <p>Parsing the text file is slow, so NGramCompiler can save the finished table to a
+ * compiled file (quadgrams.bin) once and {@link #load(String)} then maps that in instead.
+ * The mapping only makes loading fast: the table is copied onto the heap, so each JVM
+ * still has its own copy (about 1.8MB for quadgrams) and nothing is shared between them.</p>
+ * See <a href="http://practicalcryptography.com/cryptanalysis/text-characterisation/quadgrams/">PracticalCryptograph.com link</a>
+ */
+public class NGram {
+
+    /** The largest gram length supported, 26^5 floats is already 47MB. */
+    static final int MAX_LENGTH = 5;
+    /** First 4 bytes of a compiled file: NGRM */
+    static final int MAGIC = 0x4E47524D;
+    /** Version of the compiled file layout */
+    static final int VERSION = 1;
+    /** The compiled file header: magic, version, length, floor, table size, checksum */
+    static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 4 + 8;
+    /** What the compiled file name ends with in place of .txt */
+    static final String COMPILED_SUFFIX = ".bin";
+
+    /** 
+     * The log10 of the percentage of each gram, indexed by the packed gram letters.
+     * Grams missing from the file hold the floor value.
+     */
+    float[] logProbs;
+    /** length of the grams (either 1, 2, 3, or 4) */
+    int length = 0;
+    /** All the scores from the file added.  Used for scoring. */
+    private long total = 0;
+    
+    /** 
+     * The grams file does hold the lowest occurrence permutations.
+     * This floor value is calculated to use when a permutation is missing. 
+     */
+    double floor = 0;
+
+    /**
+     * Reads in the file storing each line into the logProbs table to use in the score method.
+     * @param fileName the name of the file to use.
+     * @throws Exception
+     */
+    public NGram(String fileName) throws Exception {
+    	// first check if this file exists
+        File nGramFile = new File(fileName);
+        if(!nGramFile.exists()) {
+        	// if the file does not exist, print out a detailed error 
+        	// of exactly the file the program is looking for.
+            String errStr = String.format("File does not exist! %s\n",
+            		nGramFile.getAbsolutePath());
+            System.out.println(errStr);
+            throw new Exception(errStr);
+        }
+        // first, read all the counts into the table from the file and add each to the total
+        try (BufferedReader br = new BufferedReader(new FileReader(nGramFile))) {
+            String aLine;
+            int space, index, value;
+            while((aLine = br.readLine()) != null) {
+            	// line has gram then a space and value example: TION 13168375
+                space = aLine.indexOf(' ');
+                if(logProbs == null) {
+                    // use the first gram to get the length (or N) of this grams file
+                    length = space;
+                    if(length < 1 || length > MAX_LENGTH) {
+                        throw new Exception(String.format("Bad gram length %d in %s", length, fileName));
+                    }
+                    logProbs = new float[size(length)];
+                }
+                value = Integer.parseInt(aLine.substring(space + 1).trim());
+                total += value;
+                index = index(aLine, space);
+                if(index >= 0) {
+                    logProbs[index] += value;
+                }
+            }
+        }
+        if(logProbs == null) {
+            throw new Exception("No grams found in " + fileName);
+        }
+        //System.out.printf("total is %d\n", total);
+        // calculate the least value to use when the gram is missing from the file
+        floor = Math.log10(0.01/(double)total);
+        // now replace the counts with the log of the percentage of the total
+        for (int i = 0; i < logProbs.length; i++) {
+            if(logProbs[i] > 0) {
+                logProbs[i] = (float)Math.log10(logProbs[i]/((double)total));
+            } else {
+                logProbs[i] = (float)floor;
+            }
+        }
+    }
+
+    /**
+     * Used by readCompiled, which fills in the fields.
+     */
+    private NGram() {
+    }
+
+    /**
+     * Loads the grams, using the compiled file (quadgrams.bin for quadgrams.txt)
+     * if there is one at least as new as the text file.
+     * @param fileName the name of the text or compiled file to use.
+     * @return the loaded NGram
+     * @throws Exception if the file is missing or bad
+     */
+    public static NGram load(String fileName) throws Exception {
+        if(fileName.endsWith(COMPILED_SUFFIX)) {
+            return readCompiled(fileName);
+        }
+        File textFile = new File(fileName);
+        File compiledFile = new File(compiledName(fileName));
+        if(compiledFile.exists() && (!textFile.exists() || compiledFile.lastModified() >= textFile.lastModified())) {
+            return readCompiled(compiledFile.getPath());
+        }
+        return new NGram(fileName);
+    }
+
+    /**
+     * @param fileName the name of a text gram file
+     * @return the name of its compiled file, quadgrams.txt gives quadgrams.bin
+     */
+    static String compiledName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if(dot <= fileName.lastIndexOf(File.separatorChar)) {
+            return fileName + COMPILED_SUFFIX;
+        }
+        return fileName.substring(0, dot) + COMPILED_SUFFIX;
+    }
+
+    /**
+     * Saves the finished table so it never needs to be parsed again.
+     * The file is big endian: magic, version, length, floor, table size,
+     * CRC32 checksum of the table, then the table of floats.
+     * @param fileName the name of the compiled file to write
+     * @throws Exception
+     */
+    public void save(String fileName) throws Exception {
+        ByteBuffer table = ByteBuffer.allocate(logProbs.length*Float.BYTES);
+        table.asFloatBuffer().put(logProbs);
+        CRC32 crc = new CRC32();
+        crc.update(table.array());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(length).putDouble(floor)
+                .putInt(logProbs.length).putLong(crc.getValue());
+        header.flip();
+        try (FileChannel out = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while(header.hasRemaining()) {
+                out.write(header);
+            }
+            while(table.hasRemaining()) {
+                out.write(table);
+            }
+        }
+    }
+
+    /**
+     * Reads a compiled file by mapping it into memory, so the table is read straight from the
+     * operating system's file cache with no parsing. The table is checked against its checksum
+     * then copied into logProbs, so each JVM still holds its own copy on the heap.
+     * @param fileName the name of the compiled file
+     * @return the loaded NGram
+     * @throws Exception if the file is missing or bad
+     */
+    static NGram readCompiled(String fileName) throws Exception {
+        File compiledFile = new File(fileName);
+        if(!compiledFile.exists()) {
+            String errStr = String.format("File does not exist! %s\n",
+                    compiledFile.getAbsolutePath());
+            System.out.println(errStr);
+            throw new Exception(errStr);
+        }
+        try (FileChannel in = FileChannel.open(compiledFile.toPath(), StandardOpenOption.READ)) {
+            if(in.size() < HEADER_SIZE) {
+                throw new Exception("Not a compiled grams file: " + fileName);
+            }
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if(mapped.getInt() != MAGIC) {
+                throw new Exception("Not a compiled grams file: " + fileName);
+            }
+            int version = mapped.getInt();
+            if(version != VERSION) {
+                throw new Exception(String.format("Compiled grams file %s is version %d not %d",
+                        fileName, version, VERSION));
+            }
+            NGram aNGram = new NGram();
+            aNGram.length = mapped.getInt();
+            aNGram.floor = mapped.getDouble();
+            int size = mapped.getInt();
+            long checksum = mapped.getLong();
+            if(aNGram.length < 1 || aNGram.length > MAX_LENGTH || size != size(aNGram.length)
+                    || in.size() != HEADER_SIZE + (long)size*Float.BYTES) {
+                throw new Exception("Compiled grams file is the wrong size: " + fileName);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(mapped.slice());
+            if(crc.getValue() != checksum) {
+                throw new Exception("Compiled grams file has a bad checksum: " + fileName);
+            }
+            aNGram.logProbs = new float[size];
+            mapped.asFloatBuffer().get(aNGram.logProbs);
+            return aNGram;
+        }
+    }
+
+    /**
+     * @param length the gram length
+     * @return the number of entries needed for every gram of this length (26^length)
+     */
+    static int size(int length) {
+        int size = 1;
+        for (int i = 0; i < length; i++) {
+            size *= 26;
+        }
+        return size;
+    }
+
+    /**
+     * Packs the first letters of the gram into its table index, case is ignored.
+     * @param gram the gram text from the file
+     * @param length the number of letters to pack
+     * @return the index or -1 if the gram has something other than a letter
+     */
+    static int index(String gram, int length) {
+        int index = 0;
+        int letter;
+        for (int i = 0; i < length; i++) {
+            letter = Character.toLowerCase(gram.charAt(i)) - 'a';
+            if(letter < 0 || letter >= 26) {
+                return -1;
+            }
+            index = index*26 + letter;
+        }
+        return index;
+    }
+
+    /**
+     * Works out how often each letter is used from the grams, by adding up the
+     * chances of every gram starting with the letter (so bigrams give the letter frequencies
+     * without a separate file). Missing grams add their floor chance, which is tiny.
+     * @return the chance of each letter a to z, adding up to 1
+     */
+    double[] letterFrequencies() {
+        double[] frequencies = new double[26];
+        int perLetter = logProbs.length/26;
+        double total = 0;
+        for (int i = 0; i < logProbs.length; i++) {
+            frequencies[i/perLetter] += Math.pow(10, logProbs[i]);
+        }
+        for (double aFrequency : frequencies) {
+            total += aFrequency;
+        }
+        for (int letter = 0; letter < 26; letter++) {
+            frequencies[letter] /= total;
+        }
+        return frequencies;
+    }
+
+    /**
+     * This returns scoring on all the N grams in the plan text given.
+     * The higher the value returned the better
+     * @param tryPlantext a String of hopefully good plan text to score 
+     * @return 
+     */
+    double score(String tryPlantext) {
+        return score(tryPlantext.toCharArray(), 0, tryPlantext.length());
+    }
+
+    /**
+     * Scores the N grams in part of a char array without creating any objects.
+     * Any gram holding something other than a to z scores the floor.
+     * @param tryPlantext the hopefully good plan text to score
+     * @param offset where the text to score starts
+     * @param len the number of chars to score
+     * @return the score, the higher the better
+     */
+    double score(char[] tryPlantext, int offset, int len) {
+        double score = 0;
+        // note: the last gram is not scored, same as it always was.
+        int end = offset + len - length - 1;
+        int index, k, letter;
+        for (int i = offset; i < end; i++) {
+            index = 0;
+            for (k = 0; k < length; k++) {
+                letter = tryPlantext[i+k] - 'a';
+                if(letter < 0 || letter >= 26) {
+                    break;
+                }
+                index = index*26 + letter;
+            }
+            score += k == length ? logProbs[index] : floor;
+        }
+        return score;
+    }
+
+    /**
+     * Scores the N grams in part of a byte array without creating any objects.
+     * Any gram holding something other than a to z scores the floor.
+     * @param tryPlantext the hopefully good plan text to score
+     * @param offset where the text to score starts
+     * @param len the number of bytes to score
+     * @return the score, the higher the better
+     */
+    double score(byte[] tryPlantext, int offset, int len) {
+        double score = 0;
+        // note: the last gram is not scored, same as it always was.
+        int end = offset + len - length - 1;
+        int index, k, letter;
+        for (int i = offset; i < end; i++) {
+            index = 0;
+            for (k = 0; k < length; k++) {
+                letter = tryPlantext[i+k] - 'a';
+                if(letter < 0 || letter >= 26) {
+                    break;
+                }
+                index = index*26 + letter;
+            }
+            score += k == length ? logProbs[index] : floor;
+        }
+        return score;
+    }
+
+    /**
+     * This is just used to test this class with the quadgrams.txt file.
+     * @param args these values are not used.
+     */
+    public static void main(String[] args) {
+        try {
+            NGram aQuadGram = NGram.load("quadgrams.txt");
+            //NGram aQuadGram = new NGram("bigrams.txt");
+            String aQuad = "asdf";
+            System.out.printf("%s = %f\n", aQuad, aQuadGram.score(aQuad));
+            aQuad = "tion";
+            System.out.printf("%s = %f\n", aQuad, aQuadGram.score(aQuad));
+            aQuad = "helloworld";
+            System.out.printf("%s = %f\n", aQuad, aQuadGram.score(aQuad));
+            aQuad = "then";
+            System.out.printf("%s = %f\n", aQuad, aQuadGram.score(aQuad));
+            aQuad = "qkpc";
+            System.out.printf("%s = %f\n", aQuad, aQuadGram.score(aQuad));
+            aQuad = "atta";
+            System.out.printf("%s = %f\n", aQuad, aQuadGram.score(aQuad));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
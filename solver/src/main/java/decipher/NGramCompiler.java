@@ -0,0 +1,32 @@
+package decipher;
+
+/**
+ * <p>Compiles NGram text files (bigrams.txt, quadgrams.txt) into compiled files
+ * (bigrams.bin, quadgrams.bin) holding the finished log table, so NGram.load can
+ * map them in at startup instead of parsing the text.</p>
+ * <p>Run this again whenever a text file changes, NGram.load uses the text
+ * file when it is newer than its compiled file.</p>
+ */
+public class NGramCompiler {
+
+    /**
+     * Compiles each text file given into a compiled file next to it.
+     * @param args the text files to compile, bigrams.txt and quadgrams.txt if none given
+     */
+    public static void main(String[] args) {
+        String[] fileNames = args.length > 0 ? args : new String[] {"bigrams.txt", "quadgrams.txt"};
+        try {
+            for (String fileName : fileNames) {
+                long startTime = System.nanoTime();
+                NGram aNGram = new NGram(fileName);
+                String compiledName = NGram.compiledName(fileName);
+                aNGram.save(compiledName);
+                long endtime = System.nanoTime();
+                System.out.printf("%s -> %s in %f seconds\n", fileName, compiledName,
+                        ((double)(endtime-startTime))/1000000000.0);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package decipher;
+
+/**
+ * <p>
+ * Counts the N grams of the cipher text once so that a key (map) can be scored
+ * without deciphering the text again.  The score of a map is the sum of each distinct
+ * cipher gram's count times the log value of the plan text gram the map turns it into,
+ * which is the same as {@link NGram#score(String)} of the deciphered text.
+ * </p>
+ * <p>
+ * Swapping two letters of the map only changes the grams holding one of those letters,
+ * so {@link #swapDelta(short[], int, int)} just looks at those grams.  For a long cipher
+ * text this makes trying a swap cost about the same no matter the text length.
+ * </p>
+ * <p>
+ * The sums themselves are done by a {@link ScoringKernel}, with the Vector API when the
+ * JVM and CPU allow it (see ScoringKernel), else in plain Java, both giving the same score.
+ * </p>
+ */
+public class NGramHistogram {
+
+    /** The log values of the N gram used to score */
+    final float[] logProbs;
+    /** length of the grams, the same as the N gram */
+    final int length;
+    /** Number of distinct cipher grams */
+    final int numGrams;
+    /** The letters (0 to 25) of each distinct cipher gram one after the other, length letters each */
+    private final byte[] gramLetters;
+    /** The same letters by position, positionLetters[k][gram] is letter k of the gram, for the vector gathers */
+    final int[][] positionLetters;
+    /** How many times each distinct gram is in the cipher text */
+    final int[] counts;
+    /** Bit mask of the cipher letters in each distinct gram */
+    final int[] letterMasks;
+    /** For each cipher letter, the distinct grams holding that letter */
+    final int[][] gramsWithLetter;
+    /** For each cipher letter, the positionLetters of the grams holding it, [letter][k][g] is letter k of gramsWithLetter[letter][g] */
+    final int[][][] positionLettersWithLetter;
+    /** For each cipher letter, the counts of the grams holding it, as doubles so the vector kernel need not convert them */
+    final double[][] countsWithLetter;
+    /** For each cipher letter, the letterMasks of the grams holding it */
+    final int[][] masksWithLetter;
+    /** The floor score of all the grams holding something other than a letter, these never change */
+    final double constant;
+    /** The number of grams scored, letters or not */
+    private final int numWindows;
+    /** Does the sums */
+    private ScoringKernel kernel = ScoringKernel.DEFAULT;
+
+    /**
+     * Counts the grams of the cipher text.
+     * @param nGram the N gram to score with
+     * @param cipherText the cipher text, only a to z are letters
+     * @param offset where the cipher text starts
+     * @param len the number of bytes of cipher text
+     */
+    public NGramHistogram(NGram nGram, byte[] cipherText, int offset, int len) {
+        this.logProbs = nGram.logProbs;
+        this.length = nGram.length;
+
+        // first count every gram of letters using the same grams NGram.score looks at
+        int[] gramCounts = new int[NGram.size(length)];
+        int end = offset + len - length - 1;
+        int index, k, letter;
+        int numOther = 0;
+        int distinct = 0;
+        for (int i = offset; i < end; i++) {
+            index = 0;
+            for (k = 0; k < length; k++) {
+                letter = cipherText[i+k] - 'a';
+                if(letter < 0 || letter >= 26) {
+                    break;
+                }
+                index = index*26 + letter;
+            }
+            if(k == length) {
+                if(gramCounts[index]++ == 0) {
+                    distinct++;
+                }
+            } else {
+                numOther++;
+            }
+        }
+        constant = numOther*nGram.floor;
+        numWindows = Math.max(0, end - offset);
+
+        // now pull out the distinct grams
+        numGrams = distinct;
+        gramLetters = new byte[numGrams*length];
+        positionLetters = new int[length][numGrams];
+        counts = new int[numGrams];
+        letterMasks = new int[numGrams];
+        int[] numWithLetter = new int[26];
+        int gram = 0;
+        for (index = 0; index < gramCounts.length; index++) {
+            if(gramCounts[index] == 0) {
+                continue;
+            }
+            counts[gram] = gramCounts[index];
+            int packed = index;
+            for (k = length-1; k >= 0; k--) {
+                letter = packed % 26;
+                packed /= 26;
+                gramLetters[gram*length + k] = (byte)letter;
+                positionLetters[k][gram] = letter;
+                letterMasks[gram] |= 1 << letter;
+            }
+            for (letter = 0; letter < 26; letter++) {
+                if((letterMasks[gram] & (1 << letter)) != 0) {
+                    numWithLetter[letter]++;
+                }
+            }
+            gram++;
+        }
+
+        // and list the grams holding each letter
+        gramsWithLetter = new int[26][];
+        for (letter = 0; letter < 26; letter++) {
+            gramsWithLetter[letter] = new int[numWithLetter[letter]];
+            numWithLetter[letter] = 0;
+        }
+        for (gram = 0; gram < numGrams; gram++) {
+            for (letter = 0; letter < 26; letter++) {
+                if((letterMasks[gram] & (1 << letter)) != 0) {
+                    gramsWithLetter[letter][numWithLetter[letter]++] = gram;
+                }
+            }
+        }
+
+        // and copy what the vector kernel reads of those grams so it is one after the other
+        positionLettersWithLetter = new int[26][length][];
+        countsWithLetter = new double[26][];
+        masksWithLetter = new int[26][];
+        int[] grams;
+        for (letter = 0; letter < 26; letter++) {
+            grams = gramsWithLetter[letter];
+            countsWithLetter[letter] = new double[grams.length];
+            masksWithLetter[letter] = new int[grams.length];
+            for (k = 0; k < length; k++) {
+                positionLettersWithLetter[letter][k] = new int[grams.length];
+            }
+            for (int g = 0; g < grams.length; g++) {
+                countsWithLetter[letter][g] = counts[grams[g]];
+                masksWithLetter[letter][g] = letterMasks[grams[g]];
+                for (k = 0; k < length; k++) {
+                    positionLettersWithLetter[letter][k][g] = positionLetters[k][grams[g]];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct letter grams in the cipher text
+     */
+    int getNumGrams() {
+        return numGrams;
+    }
+
+    /**
+     * @return the number of grams scored, the same as NGram.score of the deciphered text
+     */
+    int getNumWindows() {
+        return numWindows;
+    }
+
+    /**
+     * @param kernel what does the sums, to compare the kernels
+     */
+    void setKernel(ScoringKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /**
+     * Scores the cipher text deciphered with this map, without deciphering it.
+     * @param map the map of letters to score
+     * @return the score, the higher the better
+     */
+    double score(short[] map) {
+        return kernel.score(this, map);
+    }
+
+    /**
+     * Works out how much the score would change if map[i] and map[j] were swapped.
+     * The map is not changed.
+     * @param map the current map of letters
+     * @param i one cipher letter to swap (0 to 25)
+     * @param j the other cipher letter to swap (0 to 25)
+     * @return the new score minus the current score
+     */
+    double swapDelta(short[] map, int i, int j) {
+        return kernel.swapDelta(this, map, i, j);
+    }
+
+    /**
+     * Packs the plan text letters of a cipher gram deciphered with the map,
+     * as if map[i] and map[j] were swapped.
+     * @param gram which distinct cipher gram
+     * @param map the map of letters
+     * @param i a swapped cipher letter or -1 for no swap
+     * @param j the other swapped cipher letter or -1 for no swap
+     * @return the index into the NGram's logProbs
+     */
+    int plainIndex(int gram, short[] map, int i, int j) {
+        int index = 0;
+        int letter;
+        int at = gram*length;
+        for (int k = 0; k < length; k++) {
+            letter = gramLetters[at+k];
+            if(letter == i) {
+                letter = j;
+            } else if(letter == j) {
+                letter = i;
+            }
+            index = index*26 + map[letter];
+        }
+        return index;
+    }
+}
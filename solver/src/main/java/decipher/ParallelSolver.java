@@ -0,0 +1,282 @@
+package decipher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+
+/**
+ * <p>Deciphers substitution cipher text doing the climbs (do overs) of
+ * SubstitutionCipher on many threads at once.</p>
+ *
+ * <p>Each thread has its own SubstitutionCipher (for its buffers) and climbs from the
+ * same first map. The NGrams and the cipher text's quadgram counts are only read so
+ * are shared. Each climb's result is offered to a BestSolution, and once any climb
+ * finds the target number of common words the other threads stop after their climb.
+ * The best climb with the target words is then returned, not a better scoring one without.
+ * Given a SolveHandle, interrupting the thread that called solve stops the climbers too.</p>
+ *
+ * <p>With setRandom each climber gets its own stream split from the one given. Each stream is
+ * the same run to run, but which climber does which climb, and which finds the words first,
+ * is up to the threads, so only a parallelism of 1 (and no timeout) solves the same every time.</p>
+ */
+public class ParallelSolver implements AutoCloseable {
+
+    /** The quadgrams used to score, shared by all climbers */
+    private final NGram quadGram;
+    /** The bigrams used for the first map */
+    private final NGram biGram;
+    /** The number of climbers run at once */
+    private final int parallelism;
+    /** The threads the climbers run on */
+    private final ForkJoinPool pool;
+    /** The words counted to tell when a climb worked, shared by all climbers */
+    private WordMatcher wordMatcher = SubstitutionCipher.COMMON_WORDS_MATCHER;
+    /** How each climb searches, used unless solve is given one */
+    private SearchStrategy strategy = new HillClimbStrategy();
+    /** Where the timings and counts go, null for none */
+    private SolverMetrics metrics;
+    /** Solved patterns looked up before searching, null for none */
+    private SolutionCache cache;
+    /** Split into one stream per climber, null for ThreadLocalRandom */
+    private RandomGenerator.SplittableGenerator random;
+
+    /**
+     * Creates a solver using all the cores.
+     * @param quadGram the quadgrams to score with
+     * @param biGram the bigrams to score the first map with
+     */
+    public ParallelSolver(NGram quadGram, NGram biGram) {
+        this(quadGram, biGram, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a solver running parallelism climbers at once.
+     * @param quadGram the quadgrams to score with
+     * @param biGram the bigrams to score the first map with
+     * @param parallelism the number of climbers to run at once
+     */
+    public ParallelSolver(NGram quadGram, NGram biGram, int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, not " + parallelism);
+        }
+        this.quadGram = quadGram;
+        this.biGram = biGram;
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Use other words (a bigger dictionary) in place of the COMMON_WORDS.
+     * @param wordMatcher the compiled words to count
+     */
+    public void setWordMatcher(WordMatcher wordMatcher) {
+        this.wordMatcher = wordMatcher;
+    }
+
+    /**
+     * Use another way of searching, like SimulatedAnnealingStrategy.
+     * Strategies are shared by the threads so must not change while searching.
+     * @param strategy how each climb searches
+     */
+    public void setStrategy(SearchStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Count what the climbers do, all threads add to the same metrics.
+     * @param metrics where the timings and counts go, null for none
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Look cipher texts up before searching and keep the ones solved.
+     * @param cache the solved patterns, null for none
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Use seeded random numbers (like a SplittableRandom), split on the calling thread so each
+     * climber has a stream of its own. Only call solve from one thread at a time then.
+     * @param random where the climbers' streams are split from, null for ThreadLocalRandom
+     */
+    public void setRandom(RandomGenerator.SplittableGenerator random) {
+        this.random = random;
+    }
+
+    /**
+     * Deciphers the cipher text, climbing from the first map on every thread until a
+     * climb finds the target number of common words or MAX_DO_OVERS climbs are done.
+     * @param cipherText the lower case cipher text
+     * @return the best solution found, with its plan text
+     */
+    public Solution solve(String cipherText) {
+        return solve(cipherText, strategy, null);
+    }
+
+    /**
+     * Deciphers the cipher text like {@link #solve(String)} but stops early, with the best
+     * climb so far, at the deadline or maximum score evaluations of the handle or when it
+     * is cancelled. The maximum is for all the threads together.
+     * @param cipherText the lower case cipher text
+     * @param handle what bounds the solve, it also gives the best so far while this runs
+     * @return the best solution found, with its plan text
+     */
+    public Solution solve(String cipherText, SolveHandle handle) {
+        return solve(cipherText, strategy, handle);
+    }
+
+    /**
+     * Deciphers the cipher text like {@link #solve(String)} searching with the strategy given.
+     * @param cipherText the lower case cipher text
+     * @param strategy how each climb searches
+     * @return the best solution found, with its plan text and the score evaluations of all the threads
+     */
+    public Solution solve(String cipherText, SearchStrategy strategy) {
+        return solve(cipherText, strategy, null);
+    }
+
+    /**
+     * Deciphers the cipher text like {@link #solve(String, SolveHandle)} searching with the strategy given.
+     * @param cipherText the lower case cipher text
+     * @param strategy how each climb searches
+     * @param handle what bounds the solve, null for nothing
+     * @return the best solution found, with its plan text and the score evaluations of all the threads
+     */
+    public Solution solve(String cipherText, SearchStrategy strategy, SolveHandle handle) {
+        SolutionCache cache = this.cache;
+        if(cache != null) {
+            Solution cached = cache.get(cipherText);
+            if(cached != null) {
+                return cached;
+            }
+        }
+        SolverEvents.Solve solveEvent = new SolverEvents.Solve();
+        solveEvent.begin();
+        SolverMetrics metrics = this.metrics;
+        RandomGenerator.SplittableGenerator random = this.random;
+        SubstitutionCipher aSubstitutionCipher = new SubstitutionCipher(quadGram, biGram);
+        aSubstitutionCipher.setWordMatcher(wordMatcher);
+        aSubstitutionCipher.setCipherText(cipherText);
+        NGramHistogram quadCounts = new NGramHistogram(quadGram,
+                aSubstitutionCipher.cipherBytes, 0, aSubstitutionCipher.cipherBytes.length);
+        short[] firstMap = aSubstitutionCipher.firstMap(cipherText);
+        int numWordsTarget = SubstitutionCipher.numWordsTarget(cipherText);
+
+        BestSolution best = new BestSolution();
+        AtomicInteger numClimbs = new AtomicInteger();
+        AtomicBoolean found = new AtomicBoolean();
+        // the best may not have the words, so the climbs that do are kept apart
+        BestSolution converged = new BestSolution();
+        LongAdder numEvaluations = new LongAdder();
+        List<ForkJoinTask<?>> climbers = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            // split here, in order, so each climber's stream does not depend on when it starts
+            RandomGenerator climberRandom = random != null ? random.split() : null;
+            climbers.add(pool.submit(() -> {
+                SubstitutionCipher climber = new SubstitutionCipher(quadGram, biGram);
+                climber.setWordMatcher(wordMatcher);
+                climber.setCipherText(cipherText);
+                SearchContext context = new SearchContext(quadCounts, climber,
+                        climberRandom != null ? climberRandom : ThreadLocalRandom.current(), metrics, handle);
+                Solution aSolution;
+                int climb;
+                // the first climb plus the do overs
+                while(!found.get() && (climb = numClimbs.getAndIncrement()) <= SubstitutionCipher.MAX_DO_OVERS) {
+                    if(climb > 0 && metrics != null) {
+                        metrics.addRestart();
+                    }
+                    aSolution = strategy.search(context, firstMap);
+                    if(best.offer(aSolution)) {
+                        SolverEvents.newBest(aSolution);
+                        if(metrics != null) {
+                            metrics.addNewBest(aSolution);
+                        }
+                        if(handle != null) {
+                            climber.decipher(aSolution.getKey());
+                            handle.offer(new Solution(aSolution.getKey(), aSolution.getScore(),
+                                    aSolution.getWordCount(), climber.plainText(), handle.getNumEvaluations()));
+                        }
+                    }
+                    if(aSolution.getWordCount() >= numWordsTarget) {
+                        converged.offer(aSolution);
+                        found.set(true);
+                    } else if(context.isStopped()) {
+                        break;
+                    } else {
+                        SolverEvents.restart(climb + 1, aSolution);
+                    }
+                }
+                context.flushMetrics();
+                numEvaluations.add(context.getNumEvaluations());
+            }));
+        }
+        for (ForkJoinTask<?> aClimber : climbers) {
+            try {
+                aClimber.get();
+            } catch (InterruptedException e) {
+                // the climbers only look at their own threads and join hides the interrupt
+                // until they are done, so stop them and keep the interrupt for the caller
+                if(handle != null) {
+                    handle.cancel();
+                }
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // thrown by the join
+            }
+            aClimber.join();
+        }
+
+        Solution bestSolution = found.get() ? converged.get() : best.get();
+        aSubstitutionCipher.decipher(bestSolution.getKey());
+        Solution aSolution = new Solution(bestSolution.getKey(), bestSolution.getScore(),
+                bestSolution.getWordCount(), aSubstitutionCipher.plainText(), numEvaluations.sum(), found.get());
+        SubstitutionCipher.solved(solveEvent, cipherText, strategy,
+                Math.min(numClimbs.get(), SubstitutionCipher.MAX_DO_OVERS + 1) - 1, aSolution, metrics);
+        if(cache != null) {
+            cache.put(cipherText, aSolution);
+        }
+        return aSolution;
+    }
+
+    /**
+     * Stops the climbing threads.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Used to test the ParallelSolver class
+     * @param args optional number of threads (all cores if not given), then
+     *             optional search strategy name (hill, anneal or tempering)
+     */
+    public static void main(String[] args) {
+        try (ParallelSolver aSolver = args.length > 0
+                ? new ParallelSolver(NGram.load("quadgrams.txt"), NGram.load("bigrams.txt"), Integer.parseInt(args[0]))
+                : new ParallelSolver(NGram.load("quadgrams.txt"), NGram.load("bigrams.txt"))) {
+            if(args.length > 1) {
+                aSolver.setStrategy(SearchStrategy.named(args[1]));
+            }
+            long startTime = System.nanoTime();
+            Solution aSolution = aSolver.solve("qbufujyyxrccpqbnmrjsceqduuqnmrqbukfuonpumqchqbuemnqupoqjquonoqbuhccpqbuxkeqxcenmqbnoynqqyufccdanqbveoqjsceqjmxqbnmrxcepajmqqcujqcfpfnmtseqonmlumedsufcmunajomqbemrfxseqqbnfoqxjmpmedsufqacqbuxajohfuundeoqbjgupfjmtdujsceqhnhquumpfkukkufo");
+            long endtime = System.nanoTime();
+            System.out.printf("Time taken: %f seconds\n",((double)(endtime-startTime))/1000000000.0);
+            System.out.printf("bestWordCount->%d<- evaluations->%d<-\n",aSolution.getWordCount(),aSolution.getNumEvaluations());
+            System.out.printf("->%s<-\n",aSolution.getPlainText());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package decipher;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * <p>Parallel tempering (replica exchange): a number of copies (replicas) of the map
+ * are searched side by side, each at its own fixed temperature from hot to cold,
+ * keeping worse swaps like simulated annealing does.
+ * Every so often neighbouring replicas trade maps, with the chance that keeps each
+ * temperature's statistics right. A map the hot replicas find over a hill can so work
+ * its way down to the cold replicas, which climb it to the top.</p>
+ *
+ * <p>The replicas take turns on the one thread, run ParallelSolver to use more cores.
+ * Temperatures are per gram of cipher text. The best map any replica sees is returned.</p>
+ * See <a href="https://en.wikipedia.org/wiki/Parallel_tempering">Parallel tempering wiki</a>
+ */
+public class ParallelTemperingStrategy implements SearchStrategy {
+
+    /** Default number of replicas */
+    static final int REPLICAS = 6;
+    /** Default temperature of the coldest replica */
+    static final double MIN_TEMPERATURE = 0.002;
+    /** Default temperature of the hottest replica */
+    static final double MAX_TEMPERATURE = 0.05;
+    /** Default number of swaps tried by each replica */
+    static final long STEPS = 5000;
+    /** Default number of steps between trades */
+    static final int EXCHANGE_INTERVAL = 50;
+
+    /** Number of replicas */
+    private final int replicas;
+    /** The temperature of each replica, coldest first */
+    private final double[] temperatures;
+    /** Number of swaps tried by each replica */
+    private final long steps;
+    /** Number of steps between trades */
+    private final int exchangeInterval;
+
+    /**
+     * Tempering with the default settings.
+     */
+    public ParallelTemperingStrategy() {
+        this(REPLICAS, MIN_TEMPERATURE, MAX_TEMPERATURE, STEPS, EXCHANGE_INTERVAL);
+    }
+
+    /**
+     * The temperatures are spaced geometrically from the min to the max temperature.
+     * @param replicas number of replicas, at least 2
+     * @param minTemperature temperature (per gram) of the coldest replica
+     * @param maxTemperature temperature (per gram) of the hottest replica
+     * @param steps number of swaps tried by each replica
+     * @param exchangeInterval number of steps between trades
+     */
+    public ParallelTemperingStrategy(int replicas, double minTemperature, double maxTemperature,
+            long steps, int exchangeInterval) {
+        if(replicas < 2 || minTemperature <= 0 || maxTemperature < minTemperature
+                || steps < 1 || exchangeInterval < 1) {
+            throw new IllegalArgumentException("Need 2 or more replicas, temperatures more than 0 and steps");
+        }
+        this.replicas = replicas;
+        this.steps = steps;
+        this.exchangeInterval = exchangeInterval;
+        temperatures = new double[replicas];
+        for (int k = 0; k < replicas; k++) {
+            temperatures[k] = minTemperature*Math.pow(maxTemperature/minTemperature, (double)k/(replicas - 1));
+        }
+    }
+
+    @Override
+    public Solution search(SearchContext context, short[] startMap) {
+        long startEvaluations = context.getNumEvaluations();
+        RandomGenerator random = context.getRandom();
+        int numGrams = context.getNumGrams();
+        short[][] maps = new short[replicas][];
+        double[] scores = new double[replicas];
+        double startScore = context.score(startMap);
+        for (int k = 0; k < replicas; k++) {
+            maps[k] = Arrays.copyOf(startMap, 26);
+            scores[k] = startScore;
+        }
+        short[] bestMap = Arrays.copyOf(startMap, 26);
+        double bestScore = startScore;
+        double delta, temperature, chance;
+        int i,j;
+        short[] tempMap;
+        double tempScore;
+        for (long step = 0; step < steps && !context.isStopped(bestMap, bestScore); step++) {
+            for (int k = 0; k < replicas; k++) {
+                temperature = temperatures[k]*numGrams;
+                i = random.nextInt(0, 26);
+                j = random.nextInt(0, 26);
+                while(i==j)
+                    j = random.nextInt(0, 26);
+
+                delta = context.swapDelta(maps[k], i, j);
+                if(delta >= 0 || random.nextDouble() < Math.exp(delta/temperature)) {
+                    context.swap(maps[k], i, j);
+                    scores[k] += delta;
+                    if(scores[k] > bestScore) {
+                        System.arraycopy(maps[k], 0, bestMap, 0, 26);
+                        bestScore = scores[k];
+                    }
+                }
+            }
+            if(step % exchangeInterval == exchangeInterval - 1) {
+                // try trading each neighbouring pair, hottest first
+                for (int k = replicas - 2; k >= 0; k--) {
+                    chance = (scores[k+1] - scores[k])
+                            *(1/(temperatures[k]*numGrams) - 1/(temperatures[k+1]*numGrams));
+                    if(chance >= 0 || random.nextDouble() < Math.exp(chance)) {
+                        tempMap = maps[k];
+                        maps[k] = maps[k+1];
+                        maps[k+1] = tempMap;
+                        tempScore = scores[k];
+                        scores[k] = scores[k+1];
+                        scores[k+1] = tempScore;
+                    }
+                }
+            }
+        }
+        return new Solution(bestMap, bestScore, context.wordCount(bestMap), null,
+                context.getNumEvaluations() - startEvaluations);
+    }
+}
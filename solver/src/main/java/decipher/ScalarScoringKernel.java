@@ -0,0 +1,81 @@
+package decipher;
+
+/**
+ * <p>Scores in plain Java, keeping the LANES sums in locals (s0 to s7) so they stay in
+ * registers. Gives exactly the same results as {@link VectorScoringKernel}.</p>
+ */
+final class ScalarScoringKernel implements ScoringKernel {
+
+    @Override
+    public double score(NGramHistogram histogram, short[] map) {
+        int[] counts = histogram.counts;
+        float[] logProbs = histogram.logProbs;
+        int numGrams = histogram.numGrams;
+        int upper = numGrams - numGrams % LANES;
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+        int g;
+        for (g = 0; g < upper; g += LANES) {
+            s0 += (double)counts[g]*logProbs[histogram.plainIndex(g, map, -1, -1)];
+            s1 += (double)counts[g+1]*logProbs[histogram.plainIndex(g+1, map, -1, -1)];
+            s2 += (double)counts[g+2]*logProbs[histogram.plainIndex(g+2, map, -1, -1)];
+            s3 += (double)counts[g+3]*logProbs[histogram.plainIndex(g+3, map, -1, -1)];
+            s4 += (double)counts[g+4]*logProbs[histogram.plainIndex(g+4, map, -1, -1)];
+            s5 += (double)counts[g+5]*logProbs[histogram.plainIndex(g+5, map, -1, -1)];
+            s6 += (double)counts[g+6]*logProbs[histogram.plainIndex(g+6, map, -1, -1)];
+            s7 += (double)counts[g+7]*logProbs[histogram.plainIndex(g+7, map, -1, -1)];
+        }
+        // the last few grams go in the first sums, as they would in a vector
+        int rest = numGrams - upper;
+        if(rest > 0) s0 += (double)counts[g]*logProbs[histogram.plainIndex(g, map, -1, -1)];
+        if(rest > 1) s1 += (double)counts[g+1]*logProbs[histogram.plainIndex(g+1, map, -1, -1)];
+        if(rest > 2) s2 += (double)counts[g+2]*logProbs[histogram.plainIndex(g+2, map, -1, -1)];
+        if(rest > 3) s3 += (double)counts[g+3]*logProbs[histogram.plainIndex(g+3, map, -1, -1)];
+        if(rest > 4) s4 += (double)counts[g+4]*logProbs[histogram.plainIndex(g+4, map, -1, -1)];
+        if(rest > 5) s5 += (double)counts[g+5]*logProbs[histogram.plainIndex(g+5, map, -1, -1)];
+        if(rest > 6) s6 += (double)counts[g+6]*logProbs[histogram.plainIndex(g+6, map, -1, -1)];
+        return histogram.constant + s0 + s1 + s2 + s3 + s4 + s5 + s6 + s7;
+    }
+
+    @Override
+    public double swapDelta(NGramHistogram histogram, short[] map, int i, int j) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+        // first the grams holding i, then those holding j but not i
+        for (int pass = 0; pass < 2; pass++) {
+            int[] grams = histogram.gramsWithLetter[pass == 0 ? i : j];
+            int skipMask = pass == 0 ? 0 : 1 << i;
+            int upper = grams.length - grams.length % LANES;
+            int g;
+            for (g = 0; g < upper; g += LANES) {
+                s0 += term(histogram, map, i, j, grams[g], skipMask);
+                s1 += term(histogram, map, i, j, grams[g+1], skipMask);
+                s2 += term(histogram, map, i, j, grams[g+2], skipMask);
+                s3 += term(histogram, map, i, j, grams[g+3], skipMask);
+                s4 += term(histogram, map, i, j, grams[g+4], skipMask);
+                s5 += term(histogram, map, i, j, grams[g+5], skipMask);
+                s6 += term(histogram, map, i, j, grams[g+6], skipMask);
+                s7 += term(histogram, map, i, j, grams[g+7], skipMask);
+            }
+            int rest = grams.length - upper;
+            if(rest > 0) s0 += term(histogram, map, i, j, grams[g], skipMask);
+            if(rest > 1) s1 += term(histogram, map, i, j, grams[g+1], skipMask);
+            if(rest > 2) s2 += term(histogram, map, i, j, grams[g+2], skipMask);
+            if(rest > 3) s3 += term(histogram, map, i, j, grams[g+3], skipMask);
+            if(rest > 4) s4 += term(histogram, map, i, j, grams[g+4], skipMask);
+            if(rest > 5) s5 += term(histogram, map, i, j, grams[g+5], skipMask);
+            if(rest > 6) s6 += term(histogram, map, i, j, grams[g+6], skipMask);
+        }
+        return 0.0 + s0 + s1 + s2 + s3 + s4 + s5 + s6 + s7;
+    }
+
+    /**
+     * @return how much one gram's score changes with the swap, 0 if it holds a skipped letter
+     */
+    private static double term(NGramHistogram histogram, short[] map, int i, int j, int gram, int skipMask) {
+        if((histogram.letterMasks[gram] & skipMask) != 0) {
+            return 0;
+        }
+        float[] logProbs = histogram.logProbs;
+        return histogram.counts[gram]*((double)logProbs[histogram.plainIndex(gram, map, i, j)]
+                - logProbs[histogram.plainIndex(gram, map, -1, -1)]);
+    }
+}
@@ -0,0 +1,56 @@
+package decipher;
+
+/**
+ * <p>Does the sums behind NGramHistogram.score and swapDelta.</p>
+ *
+ * <p>There are two: {@link ScalarScoringKernel}, plain Java that runs anywhere, and
+ * {@link VectorScoringKernel}, which uses the incubating Vector API to gather and add
+ * LANES grams at once. Both add the grams into LANES separate sums, gram g into sum
+ * g % LANES in the same order, then add the sums up in order, so they give exactly the
+ * same score for the same map and a search goes the same way whichever is used.</p>
+ *
+ * <p>The vector kernel is only used if the JVM was started with
+ * <code>--add-modules jdk.incubator.vector</code>, the CPU has 256 bit vectors (AVX2 or
+ * better) and the decipher.vector system property is not false.</p>
+ */
+interface ScoringKernel {
+
+    /** The number of separate sums, one per vector lane */
+    int LANES = 8;
+
+    /** The kernel used unless NGramHistogram.setKernel is called */
+    ScoringKernel DEFAULT = create();
+
+    /**
+     * @param histogram the cipher grams
+     * @param map the map of letters
+     * @return the score of the cipher text deciphered with the map
+     */
+    double score(NGramHistogram histogram, short[] map);
+
+    /**
+     * @param histogram the cipher grams
+     * @param map the map of letters, not changed
+     * @param i one cipher letter to swap
+     * @param j the other cipher letter to swap
+     * @return the new score minus the current score
+     */
+    double swapDelta(NGramHistogram histogram, short[] map, int i, int j);
+
+    /**
+     * @return the vector kernel if it can be used, else the scalar kernel
+     */
+    static ScoringKernel create() {
+        if(Boolean.parseBoolean(System.getProperty("decipher.vector", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                if(VectorScoringKernel.isSupported()) {
+                    return new VectorScoringKernel();
+                }
+            } catch (LinkageError e) {
+                // the Vector API classes could not be loaded, fall through to scalar
+            }
+        }
+        return new ScalarScoringKernel();
+    }
+}
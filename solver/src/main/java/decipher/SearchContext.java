@@ -0,0 +1,239 @@
+package decipher;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * <p>What a SearchStrategy needs to search for a map of one cipher text: scoring maps,
+ * counting the common words of a map and the random numbers.</p>
+ *
+ * <p>Every score and swap delta is counted as a score evaluation. A context belongs to
+ * one thread (it uses the solver's buffers) but the quadgram counts can be shared.</p>
+ *
+ * <p>Given SolverMetrics it also times the deciphering and word counting and counts the
+ * swaps kept. Scoring is too quick to read the clock for every evaluation, so the clock is
+ * read every CHECK_INTERVAL evaluations and the time between, less the word counting, is
+ * taken as scoring time. The evaluations and swaps kept are added to the metrics then too
+ * (the rest by {@link #flushMetrics()}). Without them nothing is timed.</p>
+ *
+ * <p>Given a SolveHandle, searches should check {@link #isStopped(short[], double)} as they
+ * go, with their best map, and return the best they have once it is true. The best map is
+ * offered to the handle whenever it is checked, so the handle has a best so far during the
+ * first climb.</p>
+ */
+public class SearchContext {
+
+    /** About how many score evaluations are done between looks at the SolveHandle */
+    static final int CHECK_INTERVAL = 256;
+
+    /** The quadgram counts of the cipher text */
+    private final NGramHistogram quadCounts;
+    /** The solver set up with the cipher text, used to decipher and count words */
+    private final SubstitutionCipher solver;
+    /** Where the random swaps come from */
+    private final RandomGenerator random;
+    /** The number of scores and swap deltas worked out */
+    private long numEvaluations;
+    /** Where the timings and counts go, null for none */
+    private final SolverMetrics metrics;
+    /** What bounds the solve, null for nothing */
+    private final SolveHandle handle;
+    /** The numEvaluations last added to the metrics */
+    private long meteredEvaluations;
+    /** The swaps kept since the metrics were last added to */
+    private long unmeteredAccepted;
+    /** When the metrics were last added to */
+    private long meteredNanos;
+    /** The time deciphering and counting words since the metrics were last added to */
+    private long wordCountNanos;
+    /** The numEvaluations last added to the handle */
+    private long reportedEvaluations;
+    /** The numEvaluations to look at the handle again at */
+    private long nextCheck;
+    /** True once the handle said to stop */
+    private boolean stopped;
+    /** The best score offered to the handle */
+    private double offeredScore = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Constructor
+     * @param quadCounts the quadgram counts of the cipher text
+     * @param solver the solver set up with the same cipher text (setCipherText)
+     * @param random where the random swaps come from
+     */
+    public SearchContext(NGramHistogram quadCounts, SubstitutionCipher solver, RandomGenerator random) {
+        this(quadCounts, solver, random, null);
+    }
+
+    /**
+     * Constructor
+     * @param quadCounts the quadgram counts of the cipher text
+     * @param solver the solver set up with the same cipher text (setCipherText)
+     * @param random where the random swaps come from
+     * @param metrics where the timings and counts go, null for none
+     */
+    public SearchContext(NGramHistogram quadCounts, SubstitutionCipher solver, RandomGenerator random,
+            SolverMetrics metrics) {
+        this(quadCounts, solver, random, metrics, null);
+    }
+
+    /**
+     * Constructor
+     * @param quadCounts the quadgram counts of the cipher text
+     * @param solver the solver set up with the same cipher text (setCipherText)
+     * @param random where the random swaps come from
+     * @param metrics where the timings and counts go, null for none
+     * @param handle what bounds the solve, null for nothing
+     */
+    public SearchContext(NGramHistogram quadCounts, SubstitutionCipher solver, RandomGenerator random,
+            SolverMetrics metrics, SolveHandle handle) {
+        this.quadCounts = quadCounts;
+        this.solver = solver;
+        this.random = random;
+        this.metrics = metrics;
+        this.handle = handle;
+        if(metrics != null) {
+            meteredNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Looks at the SolveHandle every CHECK_INTERVAL score evaluations (or sooner if the
+     * maximum is close), adding the evaluations done to it.
+     * @return true if the search should stop and return what it has
+     */
+    public boolean isStopped() {
+        if(stopped || handle == null || numEvaluations < nextCheck) {
+            return stopped;
+        }
+        return checkHandle();
+    }
+
+    /**
+     * Like {@link #isStopped()}, but when looking at the handle first offers it the best map
+     * if it is better than the last offered, deciphering it.
+     * @param bestMap the best map of the search so far, not changed
+     * @param bestScore its score
+     * @return true if the search should stop and return what it has
+     */
+    public boolean isStopped(short[] bestMap, double bestScore) {
+        if(stopped || handle == null || numEvaluations < nextCheck) {
+            return stopped;
+        }
+        if(bestScore > offeredScore) {
+            offeredScore = bestScore;
+            int wordCount = wordCount(bestMap);
+            handle.offer(new Solution(bestMap, bestScore, wordCount, solver.plainText(), handle.getNumEvaluations()));
+        }
+        return checkHandle();
+    }
+
+    /**
+     * Adds the evaluations done to the handle and asks it whether to stop.
+     * @return true if the search should stop
+     */
+    private boolean checkHandle() {
+        handle.addEvaluations(numEvaluations - reportedEvaluations);
+        reportedEvaluations = numEvaluations;
+        stopped = handle.shouldStop();
+        nextCheck = numEvaluations + Math.max(1, Math.min(CHECK_INTERVAL, handle.getRemainingEvaluations()));
+        return stopped;
+    }
+
+    /**
+     * @param map a map of letters
+     * @return the quadgram score of the cipher text deciphered with the map
+     */
+    public double score(short[] map) {
+        numEvaluations++;
+        if(metrics != null && (numEvaluations & (CHECK_INTERVAL - 1)) == 0) {
+            flushMetrics();
+        }
+        return quadCounts.score(map);
+    }
+
+    /**
+     * @param map a map of letters, not changed
+     * @param i one cipher letter to swap (0 to 25)
+     * @param j the other cipher letter to swap (0 to 25)
+     * @return how much the score changes if map[i] and map[j] are swapped
+     */
+    public double swapDelta(short[] map, int i, int j) {
+        numEvaluations++;
+        if(metrics != null && (numEvaluations & (CHECK_INTERVAL - 1)) == 0) {
+            flushMetrics();
+        }
+        return quadCounts.swapDelta(map, i, j);
+    }
+
+    /**
+     * Adds the evaluations and swaps kept since the metrics were last added to, and the time
+     * since less the word counting, to the metrics. Called every CHECK_INTERVAL evaluations, and should be
+     * called once the search is done.
+     */
+    void flushMetrics() {
+        if(metrics == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        metrics.addEvaluations(numEvaluations - meteredEvaluations, Math.max(0, now - meteredNanos - wordCountNanos));
+        metrics.addAccepted(unmeteredAccepted);
+        unmeteredAccepted = 0;
+        meteredEvaluations = numEvaluations;
+        meteredNanos = now;
+        wordCountNanos = 0;
+    }
+
+    /**
+     * @param map a map of letters
+     * @return the count of common words in the cipher text deciphered with the map
+     */
+    public int wordCount(short[] map) {
+        if(metrics == null) {
+            solver.decipher(map);
+            return solver.wordCount(solver.plainBytes, solver.cipherBytes.length);
+        }
+        long start = System.nanoTime();
+        solver.decipher(map);
+        long deciphered = System.nanoTime();
+        int wordCount = solver.wordCount(solver.plainBytes, solver.cipherBytes.length);
+        long end = System.nanoTime();
+        metrics.addDecode(deciphered - start);
+        metrics.addWordCount(end - deciphered);
+        wordCountNanos += end - start;
+        return wordCount;
+    }
+
+    /**
+     * @return the number of grams scored, scores grow with this so temperatures are per gram
+     */
+    public int getNumGrams() {
+        return Math.max(1, quadCounts.getNumWindows());
+    }
+
+    /**
+     * @return where the random swaps come from
+     */
+    public RandomGenerator getRandom() {
+        return random;
+    }
+
+    /**
+     * @return the number of scores and swap deltas worked out so far
+     */
+    public long getNumEvaluations() {
+        return numEvaluations;
+    }
+
+    /**
+     * Keeps a swap, swapping two letters of a map.
+     * @param map the map to change
+     * @param i one cipher letter
+     * @param j the other cipher letter
+     */
+    void swap(short[] map, int i, int j) {
+        unmeteredAccepted++;
+        short temp = map[j];
+        map[j] = map[i];
+        map[i] = temp;
+    }
+}
@@ -0,0 +1,41 @@
+package decipher;
+
+/**
+ * <p>How a map is searched for, starting from the first map.</p>
+ *
+ * <p>The solvers call search once per climb (or do over), so a strategy only needs
+ * to do one search. It scores maps through the SearchContext, which counts the
+ * score evaluations so strategies can be compared by how many they need. A strategy
+ * should stop early, returning the best it has, once context.isStopped(bestMap, bestScore) is true.</p>
+ * <ul>
+ *    <li>{@link HillClimbStrategy} keeps a random swap only if it is better (the default)</li>
+ *    <li>{@link SimulatedAnnealingStrategy} sometimes keeps a worse swap, less often as it cools</li>
+ *    <li>{@link ParallelTemperingStrategy} anneals copies at different temperatures that trade maps</li>
+ * </ul>
+ */
+public interface SearchStrategy {
+
+    /**
+     * Searches for a better map.
+     * @param context scores maps and holds the random numbers
+     * @param startMap the map to start from, this must not be changed
+     * @return the best map found with its score and word count
+     */
+    Solution search(SearchContext context, short[] startMap);
+
+    /**
+     * Gets a strategy with its default settings by name, for command lines and requests.
+     * @param name hill, anneal or tempering
+     * @return the strategy
+     * @throws IllegalArgumentException if there is no strategy with the name
+     */
+    static SearchStrategy named(String name) {
+        switch (name) {
+            case "hill":      return new HillClimbStrategy();
+            case "anneal":    return new SimulatedAnnealingStrategy();
+            case "tempering": return new ParallelTemperingStrategy();
+            default:
+                throw new IllegalArgumentException("No search strategy named " + name + ", use hill, anneal or tempering");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package decipher;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * <p>Simulated annealing: like the hill climb a random swap is tried each step, but a
+ * worse swap is also kept with the chance exp(delta/temperature). While hot this
+ * lets the search walk out of a local top, and as the temperature drops
+ * (see CoolingSchedule) it settles into climbing.</p>
+ *
+ * <p>Temperatures are per gram of cipher text, so the same settings work for short and
+ * long cipher texts. The best map seen at any step is returned.</p>
+ * See <a href="https://en.wikipedia.org/wiki/Simulated_annealing">Simulated annealing wiki</a>
+ */
+public class SimulatedAnnealingStrategy implements SearchStrategy {
+
+    /** Default temperature at the first step */
+    static final double START_TEMPERATURE = 0.05;
+    /** Default temperature at the last step */
+    static final double END_TEMPERATURE = 0.002;
+    /** Default number of swaps tried */
+    static final long STEPS = 30000;
+
+    /** How the temperature drops */
+    private final CoolingSchedule schedule;
+    /** Temperature at the first step */
+    private final double startTemperature;
+    /** Temperature at the last step */
+    private final double endTemperature;
+    /** The number of swaps tried */
+    private final long steps;
+
+    /**
+     * Anneals with the default geometric cooling.
+     */
+    public SimulatedAnnealingStrategy() {
+        this(CoolingSchedule.GEOMETRIC, START_TEMPERATURE, END_TEMPERATURE, STEPS);
+    }
+
+    /**
+     * @param schedule how the temperature drops
+     * @param startTemperature temperature (per gram) at the first step
+     * @param endTemperature temperature (per gram) at the last step
+     * @param steps the number of swaps to try
+     */
+    public SimulatedAnnealingStrategy(CoolingSchedule schedule, double startTemperature,
+            double endTemperature, long steps) {
+        if(startTemperature <= 0 || endTemperature <= 0 || steps < 1) {
+            throw new IllegalArgumentException("Temperatures and steps must be more than 0");
+        }
+        this.schedule = schedule;
+        this.startTemperature = startTemperature;
+        this.endTemperature = endTemperature;
+        this.steps = steps;
+    }
+
+    @Override
+    public Solution search(SearchContext context, short[] startMap) {
+        long startEvaluations = context.getNumEvaluations();
+        RandomGenerator random = context.getRandom();
+        int numGrams = context.getNumGrams();
+        short[] map = Arrays.copyOf(startMap, 26);
+        double score = context.score(map);
+        short[] bestMap = Arrays.copyOf(map, 26);
+        double bestScore = score;
+        double temperature, delta;
+        int i,j;
+        for (long step = 0; step < steps && !context.isStopped(bestMap, bestScore); step++) {
+            temperature = schedule.temperature(step, steps, startTemperature, endTemperature)*numGrams;
+            i = random.nextInt(0, 26);
+            j = random.nextInt(0, 26);
+            while(i==j)
+                j = random.nextInt(0, 26);
+
+            delta = context.swapDelta(map, i, j);
+            if(delta >= 0 || random.nextDouble() < Math.exp(delta/temperature)) {
+                context.swap(map, i, j);
+                score += delta;
+                if(score > bestScore) {
+                    System.arraycopy(map, 0, bestMap, 0, 26);
+                    bestScore = score;
+                }
+            }
+        }
+        return new Solution(bestMap, bestScore, context.wordCount(bestMap), null,
+                context.getNumEvaluations() - startEvaluations);
+    }
+}
@@ -0,0 +1,75 @@
+package decipher;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * <p>A map (key) found for a cipher text and how good it is.</p>
+ * <p>A Solution is never changed once created so it can be handed between the
+ * climbing threads, do not change the key returned by getKey.</p>
+ */
+@Getter  // lombok.Getter is used to create getters
+public class Solution {
+    /** The map of cipher letter to plan text letter (0 to 25) */
+    private final short[] key;
+    /** The quadgram score of the cipher text deciphered with the key, the higher the better */
+    private final double score;
+    /** Count of common words in the deciphered text */
+    private final int wordCount;
+    /** The deciphered text, only filled in for the result reported */
+    private final String plainText;
+    /** The number of score evaluations the search took */
+    private final long numEvaluations;
+    /** True if the solve found the target number of common words (only set for the result of a solve) */
+    private final boolean converged;
+
+    /**
+     * Constructor: the key is copied.
+     * @param key the map of letters
+     * @param score the quadgram score
+     * @param wordCount the count of common words
+     * @param plainText the deciphered text or null if not needed yet
+     * @param numEvaluations the number of score evaluations the search took
+     */
+    public Solution(short[] key, double score, int wordCount, String plainText, long numEvaluations) {
+        this(key, score, wordCount, plainText, numEvaluations, false);
+    }
+
+    /**
+     * Constructor: the key is copied.
+     * @param key the map of letters
+     * @param score the quadgram score
+     * @param wordCount the count of common words
+     * @param plainText the deciphered text or null if not needed yet
+     * @param numEvaluations the number of score evaluations the search took
+     * @param converged true if the solve found the target number of common words
+     */
+    public Solution(short[] key, double score, int wordCount, String plainText, long numEvaluations,
+            boolean converged) {
+        this.key = Arrays.copyOf(key, key.length);
+        this.score = score;
+        this.wordCount = wordCount;
+        this.plainText = plainText;
+        this.numEvaluations = numEvaluations;
+        this.converged = converged;
+    }
+
+    /**
+     * @return the key as the plan text letter for each cipher letter a to z
+     */
+    public String keyString() {
+        StringBuilder keyStr = new StringBuilder(key.length);
+        for (short aLetter : key) {
+            keyStr.append((char)('a' + aLetter));
+        }
+        return keyStr.toString();
+    }
+
+    /**
+     * @param other a solution to compare to, can be null
+     * @return true if this has a higher score than the other solution
+     */
+    boolean isBetterThan(Solution other) {
+        return other == null || score > other.score;
+    }
+}
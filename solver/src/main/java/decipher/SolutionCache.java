@@ -0,0 +1,367 @@
+package decipher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Remembers solved cipher texts by their pattern so the same plan text enciphered
+ * again, with the same key or any other, is answered without searching.</p>
+ *
+ * <p>The pattern of a cipher text renumbers its letters by first appearance: "qbuf qbu" and
+ * "xyzw xyz" are both "abcd abc". A short pattern fits many plan texts ("abc" is "the", "and",
+ * "you"...), but past about 25 to 30 letters (the unicity distance of English) only one plan
+ * text makes sense, so cipher texts of MIN_LETTERS or more with the same pattern are taken to
+ * have the same plan text. A hit only has to line the stored key up with the new cipher letters
+ * and decipher, both in one pass over the text. Shorter cipher texts are neither kept nor looked up.</p>
+ *
+ * <p>The cache holds at most maxEntries patterns and maxBytes of them (each pattern is as long
+ * as its cipher text), dropping the least recently used, so a few very long lines can not fill
+ * the memory. A pattern longer than maxBytes on its own is not kept. It can be
+ * shared by solvers on many threads and saved to a snapshot file to load after a restart.
+ * Only solves that found the target number of common words (converged), and at least one, are kept.</p>
+ */
+public class SolutionCache {
+
+    /** The fewest letters a cipher text needs to be kept or looked up, about the unicity distance of English */
+    static final int MIN_LETTERS = 30;
+    /** Default most patterns held */
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+    /** Default most bytes of patterns held */
+    static final long DEFAULT_MAX_BYTES = 64L*1024*1024;
+    /** About the bytes an entry takes besides its pattern: the map entry, the key and the objects */
+    static final int ENTRY_OVERHEAD = 160;
+    /** Snapshot files start with this ("SOLC") */
+    static final int MAGIC = 0x534F4C43;
+    /** The snapshot file format version */
+    static final int VERSION = 1;
+
+    /** The most patterns held */
+    private final int maxEntries;
+    /** The most bytes held, counting each pattern's length and ENTRY_OVERHEAD */
+    private final long maxBytes;
+    /** The bytes held now, changed holding the entries lock */
+    private long heldBytes;
+    /** Pattern to solution, least recently used first */
+    private final LinkedHashMap<String, Entry> entries;
+    /** Lookups that were found */
+    private final AtomicLong hits = new AtomicLong();
+    /** Lookups that were not found */
+    private final AtomicLong misses = new AtomicLong();
+    /** Patterns dropped to make room */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * A solved pattern.
+     */
+    private static class Entry {
+        /** The plan letter of each pattern letter (the first cipher letter seen is pattern letter 0) */
+        final short[] patternKey;
+        /** The quadgram score */
+        final double score;
+        /** The count of common words */
+        final int wordCount;
+
+        Entry(short[] patternKey, double score, int wordCount) {
+            this.patternKey = patternKey;
+            this.score = score;
+            this.wordCount = wordCount;
+        }
+    }
+
+    /**
+     * A cache of DEFAULT_MAX_ENTRIES patterns and DEFAULT_MAX_BYTES.
+     */
+    public SolutionCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * A cache of maxEntries patterns and DEFAULT_MAX_BYTES.
+     * @param maxEntries the most patterns held
+     */
+    public SolutionCache(int maxEntries) {
+        this(maxEntries, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructor
+     * @param maxEntries the most patterns held
+     * @param maxBytes the most bytes held, each pattern counts its length and ENTRY_OVERHEAD
+     */
+    public SolutionCache(int maxEntries, long maxBytes) {
+        if(maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1, not " + maxEntries);
+        }
+        if(maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1, not " + maxBytes);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Looks up a cipher text.
+     * @param cipherText the lower case cipher text
+     * @return the solution for this cipher text's letters, with its plan text, or null if not held
+     *         or shorter than MIN_LETTERS
+     */
+    public Solution get(String cipherText) {
+        byte[] text = cipherText.getBytes(StandardCharsets.ISO_8859_1);
+        if(countLetters(text) < MIN_LETTERS) {
+            return null;
+        }
+        short[] toPattern = new short[26];
+        int numLetters = pattern(text, toPattern);
+        Entry anEntry;
+        synchronized (entries) {
+            anEntry = entries.get(new String(text, StandardCharsets.ISO_8859_1));
+        }
+        if(anEntry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+
+        // line the key up with these cipher letters
+        short[] key = new short[26];
+        boolean[] used = new boolean[26];
+        for (int letter = 0; letter < 26; letter++) {
+            if(toPattern[letter] >= 0) {
+                key[letter] = anEntry.patternKey[toPattern[letter]];
+                used[key[letter]] = true;
+            }
+        }
+        // the letters not in the cipher text get the plan letters left over
+        short unused = 0;
+        for (int letter = 0; letter < 26 && numLetters < 26; letter++) {
+            if(toPattern[letter] < 0) {
+                while(used[unused]) {
+                    unused++;
+                }
+                key[letter] = unused++;
+            }
+        }
+
+        // the pattern text deciphers to the plan text
+        byte aChar;
+        for (int i = 0; i < text.length; i++) {
+            aChar = text[i];
+            if(aChar >= 'a' && aChar <= 'z') {
+                text[i] = (byte)('a' + anEntry.patternKey[aChar - 'a']);
+            }
+        }
+        return new Solution(key, anEntry.score, anEntry.wordCount,
+                new String(text, StandardCharsets.ISO_8859_1), 0, true);
+    }
+
+    /**
+     * Keeps a solution if it converged with some common words and the cipher text has MIN_LETTERS or more.
+     * @param cipherText the lower case cipher text solved
+     * @param aSolution its solution
+     */
+    public void put(String cipherText, Solution aSolution) {
+        if(!aSolution.isConverged() || aSolution.getWordCount() <= 0) {
+            return;
+        }
+        byte[] text = cipherText.getBytes(StandardCharsets.ISO_8859_1);
+        if(countLetters(text) < MIN_LETTERS) {
+            return;
+        }
+        short[] toPattern = new short[26];
+        pattern(text, toPattern);
+        short[] patternKey = new short[26];
+        for (int letter = 0; letter < 26; letter++) {
+            if(toPattern[letter] >= 0) {
+                patternKey[toPattern[letter]] = aSolution.getKey()[letter];
+            }
+        }
+        add(new String(text, StandardCharsets.ISO_8859_1),
+                new Entry(patternKey, aSolution.getScore(), aSolution.getWordCount()));
+    }
+
+    /**
+     * Puts a pattern in, then drops the least recently used until within maxEntries and maxBytes.
+     * @param pattern the pattern
+     * @param anEntry its solution
+     */
+    private void add(String pattern, Entry anEntry) {
+        long bytes = (long)pattern.length() + ENTRY_OVERHEAD;
+        if(bytes > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            if(entries.put(pattern, anEntry) == null) {
+                heldBytes += bytes;
+            }
+            Iterator<String> eldest = entries.keySet().iterator();
+            while(entries.size() > maxEntries || heldBytes > maxBytes) {
+                heldBytes -= eldest.next().length() + ENTRY_OVERHEAD;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @param text lower case text
+     * @return the number of letters in it
+     */
+    static int countLetters(byte[] text) {
+        int numLetters = 0;
+        for (byte aChar : text) {
+            if(aChar >= 'a' && aChar <= 'z') {
+                numLetters++;
+            }
+        }
+        return numLetters;
+    }
+
+    /**
+     * Turns text into its pattern, in place.
+     * @param text lower case text, each letter is changed to its pattern letter
+     * @param toPattern set to the pattern letter of each cipher letter, -1 if not in the text
+     * @return the number of different letters
+     */
+    static int pattern(byte[] text, short[] toPattern) {
+        Arrays.fill(toPattern, (short)-1);
+        int numLetters = 0;
+        int letter;
+        for (int i = 0; i < text.length; i++) {
+            letter = text[i] - 'a';
+            if(letter >= 0 && letter < 26) {
+                if(toPattern[letter] < 0) {
+                    toPattern[letter] = (short)numLetters++;
+                }
+                text[i] = (byte)('a' + toPattern[letter]);
+            }
+        }
+        return numLetters;
+    }
+
+    /**
+     * @return the number of patterns held
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the bytes held, counting each pattern's length and ENTRY_OVERHEAD
+     */
+    public long getHeldBytes() {
+        synchronized (entries) {
+            return heldBytes;
+        }
+    }
+
+    /**
+     * @return the number of lookups found
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups not found
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of patterns dropped to make room
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d bytes=%d hits=%d misses=%d evictions=%d", size(), getHeldBytes(),
+                getHits(), getMisses(), getEvictions());
+    }
+
+    /**
+     * Writes the patterns to a snapshot file, least recently used first. The file is
+     * written beside the old one and moved over it so a crash never leaves half a snapshot.
+     * @param file the snapshot file
+     * @throws IOException if the file can not be written
+     */
+    public void save(Path file) throws IOException {
+        List<Map.Entry<String, Entry>> held;
+        synchronized (entries) {
+            held = new ArrayList<>(entries.entrySet());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(held.size());
+            for (Map.Entry<String, Entry> anEntry : held) {
+                byte[] pattern = anEntry.getKey().getBytes(StandardCharsets.ISO_8859_1);
+                out.writeInt(pattern.length);
+                out.write(pattern);
+                for (short aLetter : anEntry.getValue().patternKey) {
+                    out.writeByte(aLetter);
+                }
+                out.writeDouble(anEntry.getValue().score);
+                out.writeInt(anEntry.getValue().wordCount);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the patterns of a snapshot file, if there is one.
+     * @param file the snapshot file
+     * @return the number of patterns read, 0 if there is no file
+     * @throws IOException if the file can not be read or is not a snapshot
+     */
+    public int load(Path file) throws IOException {
+        if(!Files.exists(file)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC) {
+                throw new IOException("Not a solution cache snapshot: " + file);
+            }
+            int version = in.readInt();
+            if(version != VERSION) {
+                throw new IOException(String.format("Solution cache snapshot %s is version %d not %d",
+                        file, version, VERSION));
+            }
+            int count = in.readInt();
+            for (int n = 0; n < count; n++) {
+                byte[] pattern = new byte[in.readInt()];
+                in.readFully(pattern);
+                short[] patternKey = new short[26];
+                for (int letter = 0; letter < 26; letter++) {
+                    patternKey[letter] = in.readByte();
+                    if(patternKey[letter] < 0 || patternKey[letter] >= 26) {
+                        throw new IOException("Bad key in solution cache snapshot: " + file);
+                    }
+                }
+                add(new String(pattern, StandardCharsets.ISO_8859_1),
+                        new Entry(patternKey, in.readDouble(), in.readInt()));
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package decipher;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Bounds a solve and lets the caller watch and stop it while it runs.</p>
+ *
+ * <p>A solve given a handle stops at the first of: enough common words found, the
+ * deadline, the maximum number of score evaluations, {@link #cancel()} or the thread
+ * that called solve being interrupted (ParallelSolver cancels the handle for that, as its
+ * climbs run on other threads). It then returns the best solution found so far rather than
+ * carrying on through all the do overs. Searches check the handle every
+ * {@link SearchContext#CHECK_INTERVAL} evaluations or so, so a solve stops within a
+ * millisecond or two of the deadline and, on many threads, may go a few hundred
+ * evaluations a thread over the maximum.</p>
+ *
+ * <p>Another thread can call {@link #getBestSoFar()} while the solve runs, for example to
+ * answer with what there is when a request is about to time out. The searches offer their
+ * best map whenever they check the handle, so there is a best so far soon after the solve
+ * starts, not only once a climb ends. Use a handle for one solve.</p>
+ */
+public class SolveHandle {
+
+    /** Used for no maximum number of score evaluations */
+    public static final long NO_LIMIT = Long.MAX_VALUE;
+
+    /** The System.nanoTime to stop at, only if hasDeadline */
+    private long deadlineNanos;
+    /** True if there is a deadline */
+    private boolean hasDeadline;
+    /** The most score evaluations to do */
+    private long maxEvaluations;
+    /** The score evaluations done so far, as the searches report them */
+    private final AtomicLong numEvaluations = new AtomicLong();
+    /** The best climb so far, with its plan text */
+    private final BestSolution best = new BestSolution();
+    /** Set by cancel */
+    private volatile boolean cancelled;
+
+    /**
+     * A handle with no limits, the solve only stops early if cancelled.
+     */
+    public SolveHandle() {
+        this(null, NO_LIMIT);
+    }
+
+    /**
+     * Constructor
+     * @param timeout how long from now the solve may take, null for no deadline
+     * @param maxEvaluations the most score evaluations to do, NO_LIMIT for no maximum
+     */
+    public SolveHandle(Duration timeout, long maxEvaluations) {
+        if(maxEvaluations < 1) {
+            throw new IllegalArgumentException("maxEvaluations must be at least 1, not " + maxEvaluations);
+        }
+        this.hasDeadline = timeout != null;
+        this.deadlineNanos = hasDeadline ? System.nanoTime() + timeout.toNanos() : 0;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * @param timeout how long from now the solve may take
+     * @return a handle with only a deadline
+     */
+    public static SolveHandle withTimeout(Duration timeout) {
+        return new SolveHandle(timeout, NO_LIMIT);
+    }
+
+    /**
+     * @param maxEvaluations the most score evaluations to do
+     * @return a handle with only a maximum number of score evaluations
+     */
+    public static SolveHandle withMaxEvaluations(long maxEvaluations) {
+        return new SolveHandle(null, maxEvaluations);
+    }
+
+    /**
+     * Brings the deadline and maximum in to these if they are sooner or fewer, they are never
+     * put off. Only call before the solve starts, on the thread that starts it.
+     * @param timeout how long from now the solve may take, null for no change
+     * @param maxEvaluations the most score evaluations to do, NO_LIMIT for no change
+     */
+    void lowerLimits(Duration timeout, long maxEvaluations) {
+        if(maxEvaluations < 1) {
+            throw new IllegalArgumentException("maxEvaluations must be at least 1, not " + maxEvaluations);
+        }
+        if(timeout != null) {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            if(!hasDeadline || deadline - deadlineNanos < 0) {
+                deadlineNanos = deadline;
+                hasDeadline = true;
+            }
+        }
+        this.maxEvaluations = Math.min(this.maxEvaluations, maxEvaluations);
+    }
+
+    /**
+     * Asks the solve to stop, it returns the best so far soon after. Can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if cancel was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the best map so far (highest score) with its plan text, null before the searches first check the handle
+     */
+    public Solution getBestSoFar() {
+        return best.get();
+    }
+
+    /**
+     * @return about the number of score evaluations done so far
+     */
+    public long getNumEvaluations() {
+        return numEvaluations.get();
+    }
+
+    /**
+     * Keeps a climb if it is the best so far.
+     * @param aSolution the climb with its plan text
+     * @return true if this is now the best
+     */
+    boolean offer(Solution aSolution) {
+        return best.offer(aSolution);
+    }
+
+    /**
+     * @param count score evaluations a search has done since it last said
+     */
+    void addEvaluations(long count) {
+        numEvaluations.addAndGet(count);
+    }
+
+    /**
+     * @return the number of score evaluations left before the maximum
+     */
+    long getRemainingEvaluations() {
+        return maxEvaluations - numEvaluations.get();
+    }
+
+    /**
+     * @return true if the solve should stop now
+     */
+    boolean shouldStop() {
+        return cancelled
+                || Thread.currentThread().isInterrupted()
+                || numEvaluations.get() >= maxEvaluations
+                || (hasDeadline && System.nanoTime() - deadlineNanos >= 0);
+    }
+}
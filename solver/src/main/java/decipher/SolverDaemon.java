@@ -0,0 +1,619 @@
+package decipher;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Keeps the NGrams loaded and the solvers warm, answering decipher requests on a local socket,
+ * so a solve does not pay for starting Java, reading quadgrams.txt and warming up the JIT every time.</p>
+ *
+ * <p>Listens on a TCP port of a loopback address, or on a Unix domain socket (unix:/path). Other
+ * addresses are refused, as anyone who can connect can keep the workers busy.
+ * Each connection sends request lines and gets one JSON line back for each, in order:</p>
+ * <ul>
+ *    <li>a cipher text, or a JSON object the same as a BatchDecipher line ("ciphertext" and optional
+ *    "id", "strategy", "timeoutMs" and "maxEvaluations"): the BatchDecipher result, with line the
+ *    request number on the connection, plus queuedMs (waiting for a worker) and totalMs (from reading
+ *    the request to having the result)</li>
+ *    <li>{"command":"health"}: the status, uptime, and busy and queued workers</li>
+ *    <li>{"command":"stats"}: requests, rejected, cancelled, errors, mean and max totalMs, the
+ *    SolverMetrics (if set, see setMetrics) and the SolutionCache (if set, see setCache)</li>
+ * </ul>
+ * <p>Solves run on a fixed number of workers with a bounded queue. When the queue is full a request
+ * is answered {"error":"busy"} at once rather than waiting. health and stats are answered on the
+ * connection's own thread so they come back quickly however busy the workers are.</p>
+ *
+ * <p>Every solve has a deadline (from when the request is read) and a maximum number of score
+ * evaluations, DEFAULT_TIMEOUT and DEFAULT_MAX_EVALUATIONS unless setLimits is called. A request's
+ * timeoutMs and maxEvaluations can only lower them. If the connection is reset while a solve waits or
+ * runs, the solve is cancelled and answered with its best so far. A client that only closes its sending
+ * side (like nc -N) still gets its answers, and as a normal close looks the same until the answer is
+ * written, such a solve runs to its limits.</p>
+ *
+ * <p>A request line longer than MAX_REQUEST_BYTES is answered {"error":"too long"} as soon as it gets
+ * that long, and the rest of it is skipped, so a client can not fill the memory.</p>
+ */
+public class SolverDaemon implements AutoCloseable {
+
+    /** The TCP port listened on if none is given */
+    static final int DEFAULT_PORT = 7878;
+    /** The most connections open at once */
+    static final int MAX_CONNECTIONS = 64;
+    /** How many solves per worker can wait for a worker */
+    static final int QUEUE_PER_WORKER = 4;
+    /** How long a solve may take, from when the request is read, if not set */
+    static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    /** The most score evaluations a solve may do if not set */
+    static final long DEFAULT_MAX_EVALUATIONS = 50000000;
+    /** The longest request line, in bytes */
+    static final int MAX_REQUEST_BYTES = 1024*1024;
+    /** How often a connection waiting for a solve looks to see if the client has gone, in milliseconds */
+    static final long DISCONNECT_POLL_MS = 20;
+    /** The number of solves done to warm up the JIT before listening */
+    static final int WARM_UP_SOLVES = 3;
+    /** The most score evaluations of each warm up solve */
+    static final long WARM_UP_EVALUATIONS = 200000;
+
+    /** The quadgrams to score with */
+    private final NGram quadGram;
+    /** The bigrams to score the first map with */
+    private final NGram biGram;
+    /** Parses and solves the request lines, with a solver per worker sharing the metrics and cache */
+    private final BatchDecipher batch;
+    /** The solve threads */
+    private final ThreadPoolExecutor workers;
+    /** A thread per open connection */
+    private final ThreadPoolExecutor connections;
+    /** When the daemon was created */
+    private final long startNanos = System.nanoTime();
+    /** Solve requests answered, busy or not */
+    private final LongAdder requests = new LongAdder();
+    /** Solve requests turned away because the queue was full */
+    private final LongAdder rejected = new LongAdder();
+    /** Solve requests cancelled as the client went away or the daemon is closing */
+    private final LongAdder cancelled = new LongAdder();
+    /** Solve requests answered with an error, other than busy or cancelled */
+    private final LongAdder errors = new LongAdder();
+    /** The total of the totalMs of all solve requests, in nanoseconds */
+    private final LongAdder totalNanos = new LongAdder();
+    /** The longest totalMs, in nanoseconds */
+    private final AtomicLong maxNanos = new AtomicLong();
+    /** What is listened on, null until serve is called */
+    private volatile ServerSocketChannel server;
+    /** The Unix domain socket file to delete on close, if there is one */
+    private volatile UnixDomainSocketAddress unixAddress;
+    /** How long a solve may take at most */
+    private volatile Duration timeout = DEFAULT_TIMEOUT;
+    /** The most score evaluations a solve may do */
+    private volatile long maxEvaluations = DEFAULT_MAX_EVALUATIONS;
+
+    /**
+     * Creates the workers, they are started as requests come in.
+     * @param quadGram the quadgrams to score with
+     * @param biGram the bigrams to score the first map with
+     * @param threads the number of cipher texts to decipher at once
+     */
+    public SolverDaemon(NGram quadGram, NGram biGram, int threads) {
+        this.quadGram = quadGram;
+        this.biGram = biGram;
+        this.batch = new BatchDecipher(quadGram, biGram, threads);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads*QUEUE_PER_WORKER));
+        this.connections = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>());
+    }
+
+    /**
+     * @return what the solves did so far, null if not counting
+     */
+    public SolverMetrics getMetrics() {
+        return batch.getMetrics();
+    }
+
+    /**
+     * Count what the solves do, off by default.
+     * @param metrics where the timings and counts go, null for none
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        batch.setMetrics(metrics);
+    }
+
+    /**
+     * Bounds every solve, requests can only ask for less.
+     * @param timeout how long a solve may take from when its request is read
+     * @param maxEvaluations the most score evaluations a solve may do, SolveHandle.NO_LIMIT for no maximum
+     */
+    public void setLimits(Duration timeout, long maxEvaluations) {
+        if(timeout == null || timeout.isNegative() || maxEvaluations < 1) {
+            throw new IllegalArgumentException("Bad limits " + timeout + " " + maxEvaluations);
+        }
+        this.timeout = timeout;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * @return the address listened on, with the port picked if it was 0, or null if not listening yet
+     * @throws IOException if the address can not be got
+     */
+    public SocketAddress getLocalAddress() throws IOException {
+        ServerSocketChannel aServer = server;
+        return aServer != null ? aServer.getLocalAddress() : null;
+    }
+
+    /**
+     * @return the patterns solved, to load or save a snapshot, null if not caching
+     */
+    public SolutionCache getCache() {
+        return batch.getCache();
+    }
+
+    /**
+     * Answer cipher texts solved before without searching, off by default.
+     * @param cache the solved patterns, null for none
+     */
+    public void setCache(SolutionCache cache) {
+        batch.setCache(cache);
+    }
+
+    /**
+     * Solves a few cipher texts made from the COMMON_WORDS so the JIT has compiled the
+     * scoring and searching before the first request. These are not counted in the metrics or cached.
+     * @param solves the number of cipher texts to solve
+     * @throws Exception if a solve fails
+     */
+    public void warmUp(int solves) throws Exception {
+        SubstitutionCipher aSolver = new SubstitutionCipher(quadGram, biGram);
+        Random random = new Random(1);
+        List<String> words = new ArrayList<>(SubstitutionCipher.COMMON_WORDS);
+        List<Short> letters = new ArrayList<>();
+        for (short letter = 0; letter < 26; letter++) {
+            letters.add(letter);
+        }
+        short[] key = new short[26];
+        for (int n = 0; n < solves; n++) {
+            Collections.shuffle(words, random);
+            Collections.shuffle(letters, random);
+            for (int letter = 0; letter < 26; letter++) {
+                key[letter] = letters.get(letter);
+            }
+            aSolver.solve(aSolver.subsitute(String.join("", words), key),
+                    SolveHandle.withMaxEvaluations(WARM_UP_EVALUATIONS));
+        }
+    }
+
+    /**
+     * Listens for connections until closed.
+     * @param address a loopback InetSocketAddress or a UnixDomainSocketAddress (a stale socket file is replaced)
+     * @throws IOException if the address can not be listened on
+     * @throws IllegalArgumentException if the address is not a loopback or Unix domain socket address
+     */
+    public void serve(SocketAddress address) throws IOException {
+        checkLocal(address);
+        if(address instanceof UnixDomainSocketAddress) {
+            unixAddress = (UnixDomainSocketAddress)address;
+            Files.deleteIfExists(unixAddress.getPath());
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        while(server.isOpen()) {
+            SocketChannel aChannel;
+            try {
+                aChannel = server.accept();
+            } catch (ClosedChannelException e) {
+                // closed
+                break;
+            }
+            try {
+                connections.execute(() -> handle(aChannel));
+            } catch (RejectedExecutionException e) {
+                try (SocketChannel tooMany = aChannel) {
+                    Writer out = Channels.newWriter(tooMany, StandardCharsets.UTF_8);
+                    out.write("{\"error\":\"too many connections\"}\n");
+                    out.flush();
+                } catch (IOException closed) {
+                    // the client has gone anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of one connection until it is closed.
+     * @param aChannel the connection
+     */
+    private void handle(SocketChannel aChannel) {
+        try (SocketChannel channel = aChannel;
+             Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            Connection in = new Connection(channel);
+            String aLine;
+            long lineNum = 0;
+            while((aLine = in.readLine()) != null) {
+                lineNum++;
+                if(in.isTooLong()) {
+                    requests.increment();
+                    errors.increment();
+                    out.write("{\"line\":" + lineNum + ",\"error\":\"too long\"}\n");
+                    out.flush();
+                    continue;
+                }
+                if(aLine.isBlank()) {
+                    continue;
+                }
+                out.write(answer(aLine, lineNum, in));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away or the daemon is closing
+        }
+    }
+
+    /**
+     * Answers one request line.
+     * @param aLine a cipher text, a JSON solve request or a JSON command
+     * @param lineNum the request number on the connection
+     * @param connection where the request came from, its solve is cancelled if it is reset, null for none
+     * @return the JSON answer line
+     */
+    String answer(String aLine, long lineNum, Connection connection) {
+        long received = System.nanoTime();
+        String command = null;
+        if(aLine.trim().startsWith("{")) {
+            try {
+                command = Json.getField(aLine, "command");
+            } catch (IllegalArgumentException e) {
+                // not JSON, decipherLine will say so
+            }
+        }
+        if(command != null) {
+            return command(command);
+        }
+
+        requests.increment();
+        SolveHandle handle = new SolveHandle(timeout, maxEvaluations);
+        String result;
+        try {
+            Future<String> aResult = workers.submit(() -> {
+                long started = System.nanoTime();
+                return addField(batch.decipherLine(aLine, lineNum, handle), "queuedMs", millis(started - received));
+            });
+            result = await(aResult, handle, connection);
+            if(handle.isCancelled()) {
+                cancelled.increment();
+            } else if(result.contains("\"error\":")) {
+                errors.increment();
+            }
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result = "{\"line\":" + lineNum + ",\"error\":\"busy\"}";
+        } catch (CancellationException e) {
+            cancelled.increment();
+            result = "{\"line\":" + lineNum + ",\"error\":\"cancelled\"}";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled.increment();
+            result = "{\"line\":" + lineNum + ",\"error\":\"interrupted\"}";
+        } catch (ExecutionException e) {
+            errors.increment();
+            result = "{\"line\":" + lineNum + ",\"error\":" + Json.quote(String.valueOf(e.getCause())) + "}";
+        }
+        long total = System.nanoTime() - received;
+        totalNanos.add(total);
+        maxNanos.accumulateAndGet(total, Math::max);
+        return addField(result, "totalMs", millis(total));
+    }
+
+    /**
+     * Waits for a solve, cancelling it if the connection is reset or this thread is interrupted.
+     * A solve not yet started is dropped, one running stops soon with its best so far.
+     * @param aResult the solve
+     * @param handle bounds the solve
+     * @param connection where the request came from, null for none
+     * @return the solve's result line
+     * @throws InterruptedException if interrupted, the solve is cancelled
+     * @throws ExecutionException if the solve failed
+     * @throws CancellationException if the solve was dropped before it started
+     */
+    private static String await(Future<String> aResult, SolveHandle handle, Connection connection)
+            throws InterruptedException, ExecutionException {
+        while(true) {
+            try {
+                return aResult.get(DISCONNECT_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if(connection != null && !handle.isCancelled() && connection.isReset()) {
+                    handle.cancel();
+                    aResult.cancel(false);
+                }
+            } catch (InterruptedException e) {
+                handle.cancel();
+                aResult.cancel(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @param command health or stats
+     * @return the JSON answer
+     */
+    private String command(String command) {
+        switch (command) {
+            case "health":
+                return String.format(Locale.ROOT,
+                        "{\"status\":\"ok\",\"uptimeMs\":%d,\"workers\":%d,\"busy\":%d,\"queued\":%d,\"connections\":%d}",
+                        (System.nanoTime() - startNanos)/1000000, workers.getCorePoolSize(), workers.getActiveCount(),
+                        workers.getQueue().size(), connections.getActiveCount());
+            case "stats":
+                SolutionCache cache = getCache();
+                long numRequests = requests.sum();
+                StringBuilder stats = new StringBuilder(String.format(Locale.ROOT,
+                        "{\"requests\":%d,\"rejected\":%d,\"cancelled\":%d,\"errors\":%d,\"meanMs\":%s,\"maxMs\":%s",
+                        numRequests, rejected.sum(), cancelled.sum(), errors.sum(),
+                        millis(numRequests > 0 ? totalNanos.sum()/numRequests : 0), millis(maxNanos.get())));
+                SolverMetrics metrics = getMetrics();
+                if(metrics != null) {
+                    SolverMetrics.Snapshot aSnapshot = metrics.snapshot();
+                    stats.append(String.format(Locale.ROOT,
+                            ",\"solves\":%d,\"restarts\":%d,\"evaluations\":%d,\"iterationsPerSecond\":%.0f,\"acceptanceRatio\":%.4f",
+                            aSnapshot.getSolves(), aSnapshot.getRestarts(), aSnapshot.getEvaluations(),
+                            aSnapshot.getIterationsPerSecond(), aSnapshot.getAcceptanceRatio()));
+                }
+                if(cache != null) {
+                    stats.append(String.format(Locale.ROOT,
+                            ",\"cacheSize\":%d,\"cacheBytes\":%d,\"cacheHits\":%d,\"cacheMisses\":%d,\"cacheEvictions\":%d",
+                            cache.size(), cache.getHeldBytes(), cache.getHits(), cache.getMisses(), cache.getEvictions()));
+                }
+                return stats.append('}').toString();
+            default:
+                return "{\"error\":" + Json.quote("Unknown command " + command) + "}";
+        }
+    }
+
+    /**
+     * @param json a JSON object
+     * @param name the field to add
+     * @param value the field's JSON value
+     * @return the object with the field added at the end
+     */
+    private static String addField(String json, String name, String value) {
+        int end = json.lastIndexOf('}');
+        return json.substring(0, end) + ",\"" + name + "\":" + value + json.substring(end);
+    }
+
+    /**
+     * @return the nanoseconds as milliseconds to 3 places
+     */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos/1000000.0);
+    }
+
+    /**
+     * @param address a port (on the loopback address), loopbackHost:port or unix:/path/to/socket
+     * @return the address to listen on
+     * @throws IllegalArgumentException if the host is not a loopback address
+     */
+    static SocketAddress address(String address) {
+        if(address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        if(colon < 0) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        SocketAddress aSocketAddress = new InetSocketAddress(address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)));
+        checkLocal(aSocketAddress);
+        return aSocketAddress;
+    }
+
+    /**
+     * @param address an address to listen on
+     * @throws IllegalArgumentException if it is not a Unix domain socket or a (resolved) loopback address
+     */
+    static void checkLocal(SocketAddress address) {
+        if(address instanceof UnixDomainSocketAddress) {
+            return;
+        }
+        if(!(address instanceof InetSocketAddress) || ((InetSocketAddress)address).isUnresolved()
+                || !((InetSocketAddress)address).getAddress().isLoopbackAddress()) {
+            throw new IllegalArgumentException("Only loopback addresses can be listened on, not " + address);
+        }
+    }
+
+    /**
+     * Stops listening, drops the connections and stops the workers.
+     */
+    @Override
+    public void close() {
+        try {
+            if(server != null) {
+                server.close();
+            }
+            if(unixAddress != null) {
+                Files.deleteIfExists(unixAddress.getPath());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        connections.shutdownNow();
+        workers.shutdownNow();
+        batch.close();
+    }
+
+    /**
+     * Reads request lines from a connection, at most MAX_REQUEST_BYTES each, and can look without
+     * blocking for whether the connection has been reset, keeping anything sent meanwhile for readLine.
+     */
+    static final class Connection {
+        /** The most bytes read at once */
+        static final int BUFFER_SIZE = 8192;
+
+        /** The connection, blocking except in isReset */
+        private final SocketChannel channel;
+        /** Bytes read but not yet taken, ready to get */
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        /** The line read so far */
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        /** True once the client has closed its side, it may still be reading */
+        private boolean ended;
+        /** True once reading failed, the client has gone */
+        private boolean reset;
+        /** True while skipping the rest of a line that was too long */
+        private boolean skipping;
+        /** True if the last line readLine gave was too long */
+        private boolean tooLong;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return the next line without its end of line, empty if it was too long (see isTooLong),
+         *         or null once the client has closed its side
+         * @throws IOException if the connection fails
+         */
+        String readLine() throws IOException {
+            tooLong = false;
+            byte aByte;
+            while(true) {
+                while(buffer.hasRemaining()) {
+                    aByte = buffer.get();
+                    if(skipping) {
+                        skipping = aByte != '\n';
+                    } else if(aByte == '\n') {
+                        return takeLine();
+                    } else if(line.size() >= MAX_REQUEST_BYTES) {
+                        // answer now, not once the client has sent it all
+                        line.reset();
+                        skipping = aByte != '\n';
+                        tooLong = true;
+                        return "";
+                    } else {
+                        line.write(aByte);
+                    }
+                }
+                if(ended) {
+                    return line.size() > 0 ? takeLine() : null;
+                }
+                buffer.clear();
+                if(channel.read(buffer) < 0) {
+                    ended = true;
+                }
+                buffer.flip();
+            }
+        }
+
+        /**
+         * @return true if the last line readLine gave was longer than MAX_REQUEST_BYTES
+         */
+        boolean isTooLong() {
+            return tooLong;
+        }
+
+        /**
+         * @return the line read so far as a String, emptying it
+         */
+        private String takeLine() {
+            String aLine = line.toString(StandardCharsets.UTF_8);
+            line.reset();
+            return aLine.endsWith("\r") ? aLine.substring(0, aLine.length() - 1) : aLine;
+        }
+
+        /**
+         * Reads what the client has sent, without waiting, to see if the connection has been reset.
+         * The client closing just its sending side is not a reset, it may still be waiting for answers.
+         * @return true if the connection has failed
+         */
+        boolean isReset() {
+            if(reset) {
+                return true;
+            }
+            buffer.compact();
+            try {
+                channel.configureBlocking(false);
+                try {
+                    if(channel.read(buffer) < 0) {
+                        ended = true;
+                    }
+                } finally {
+                    channel.configureBlocking(true);
+                }
+            } catch (IOException e) {
+                reset = true;
+            }
+            buffer.flip();
+            return reset;
+        }
+    }
+
+    /**
+     * Runs the daemon until killed.
+     * @param args the port, loopbackHost:port or unix:/path to listen on (default DEFAULT_PORT on the loopback address),
+     *             then optionally the number of threads, then optionally a cache snapshot file loaded
+     *             at start and saved at exit
+     */
+    public static void main(String[] args) {
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SocketAddress address = address(args.length > 0 ? args[0] : String.valueOf(DEFAULT_PORT));
+        try {
+            long startTime = System.nanoTime();
+            SolverDaemon aDaemon = new SolverDaemon(NGram.load("quadgrams.txt"), NGram.load("bigrams.txt"), threads);
+            aDaemon.setMetrics(new SolverMetrics());
+            aDaemon.setCache(new SolutionCache());
+            Path snapshot = args.length > 2 ? Path.of(args[2]) : null;
+            if(snapshot != null) {
+                aDaemon.getCache().load(snapshot);
+            }
+            aDaemon.warmUp(WARM_UP_SOLVES);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                aDaemon.close();
+                if(snapshot != null) {
+                    try {
+                        aDaemon.getCache().save(snapshot);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }));
+            System.err.printf("Listening on %s, ready in %f seconds\n", address,
+                    ((double)(System.nanoTime()-startTime))/1000000000.0);
+            aDaemon.serve(address);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package decipher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * <p>The Java Flight Recorder events of a solve. They cost next to nothing unless a
+ * recording is on, for example:</p>
+ * <pre>
+ * java -XX:StartFlightRecording=filename=solve.jfr,settings=profile decipher.BatchDecipher ciphers.txt
+ * jfr print --categories Decipher solve.jfr
+ * </pre>
+ */
+final class SolverEvents {
+
+    private SolverEvents() {
+    }
+
+    /** A climb did not find enough common words so the solver starts back from the first map */
+    @Name("decipher.Restart")
+    @Label("Restart")
+    @Category("Decipher")
+    @Description("A climb ended without the target word count and the solver starts over")
+    static class Restart extends Event {
+        @Label("Restart Number")
+        int restart;
+        @Label("Climb Score")
+        double score;
+        @Label("Climb Word Count")
+        int wordCount;
+    }
+
+    /** A climb found a better map than any before it in this solve */
+    @Name("decipher.NewBest")
+    @Label("New Best")
+    @Category("Decipher")
+    @Description("A climb found the best map of the solve so far")
+    static class NewBest extends Event {
+        @Label("Score")
+        double score;
+        @Label("Word Count")
+        int wordCount;
+        @Label("Score Evaluations")
+        long evaluations;
+    }
+
+    /** A whole solve, from frequency analysis to the plan text */
+    @Name("decipher.Solve")
+    @Label("Solve")
+    @Category("Decipher")
+    @Description("Deciphering one cipher text")
+    static class Solve extends Event {
+        @Label("Cipher Text Length")
+        int length;
+        @Label("Strategy")
+        String strategy;
+        @Label("Restarts")
+        int restarts;
+        @Label("Score Evaluations")
+        long evaluations;
+        @Label("Score")
+        double score;
+        @Label("Word Count")
+        int wordCount;
+    }
+
+    /**
+     * Records a restart if a recording wants it.
+     * @param restart the restart number
+     * @param aSolution the climb that did not find enough words
+     */
+    static void restart(int restart, Solution aSolution) {
+        Restart event = new Restart();
+        if(event.isEnabled()) {
+            event.restart = restart;
+            event.score = aSolution.getScore();
+            event.wordCount = aSolution.getWordCount();
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a new best if a recording wants it.
+     * @param aSolution the new best climb
+     */
+    static void newBest(Solution aSolution) {
+        NewBest event = new NewBest();
+        if(event.isEnabled()) {
+            event.score = aSolution.getScore();
+            event.wordCount = aSolution.getWordCount();
+            event.evaluations = aSolution.getNumEvaluations();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package decipher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * <p>Counts what the solvers are doing so a caller can poll how a long job is going.</p>
+ *
+ * <p>Give the same SolverMetrics to any number of solvers (setMetrics), they add to it
+ * from their own threads, and call {@link #snapshot()} whenever. Counting uses LongAdders
+ * so the climbing threads do not wait on each other, and the scoring is timed in blocks of
+ * evaluations (see SearchContext) so its time includes choosing the swaps. Solvers without
+ * metrics do not even read the clock.</p>
+ */
+public class SolverMetrics {
+
+    /** The number of best scores kept for the trajectory */
+    static final int TRAJECTORY_SIZE = 256;
+
+    /** When counting started */
+    private final long startNanos = System.nanoTime();
+    /** Score evaluations (each map or swap tried) */
+    private final LongAdder evaluations = new LongAdder();
+    /** Swaps kept */
+    private final LongAdder accepted = new LongAdder();
+    /** Do overs */
+    private final LongAdder restarts = new LongAdder();
+    /** Solves finished */
+    private final LongAdder solves = new LongAdder();
+    /** Time spent in the n gram scoring */
+    private final LongAdder scoreNanos = new LongAdder();
+    /** Time spent deciphering into the buffer */
+    private final LongAdder decodeNanos = new LongAdder();
+    /** Time spent counting words */
+    private final LongAdder wordCountNanos = new LongAdder();
+    /** The latest new best scores, oldest first */
+    private final ArrayDeque<BestScore> trajectory = new ArrayDeque<>();
+
+    /**
+     * A new best score found by a solve.
+     */
+    @Getter
+    public static class BestScore {
+        /** Milliseconds since the metrics were created */
+        private final long elapsedMillis;
+        /** The quadgram score */
+        private final double score;
+        /** The count of common words */
+        private final int wordCount;
+
+        BestScore(long elapsedMillis, double score, int wordCount) {
+            this.elapsedMillis = elapsedMillis;
+            this.score = score;
+            this.wordCount = wordCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%dms:%.2f/%d", elapsedMillis, score, wordCount);
+        }
+    }
+
+    /**
+     * The metrics at one time, with rates worked out.
+     */
+    @Getter
+    public static class Snapshot {
+        /** Seconds since the metrics were created */
+        private final double elapsedSeconds;
+        /** Score evaluations */
+        private final long evaluations;
+        /** Score evaluations (swaps tried) per second */
+        private final double iterationsPerSecond;
+        /** Swaps kept */
+        private final long accepted;
+        /** Swaps kept per score evaluation */
+        private final double acceptanceRatio;
+        /** Do overs */
+        private final long restarts;
+        /** Solves finished */
+        private final long solves;
+        /** Seconds spent in n gram scoring (and choosing swaps), over all threads */
+        private final double scoreSeconds;
+        /** Seconds spent deciphering into the buffer, over all threads */
+        private final double decodeSeconds;
+        /** Seconds spent counting words, over all threads */
+        private final double wordCountSeconds;
+        /** The latest new best scores, oldest first */
+        private final List<BestScore> bestScores;
+
+        Snapshot(SolverMetrics metrics) {
+            elapsedSeconds = (System.nanoTime() - metrics.startNanos)/1000000000.0;
+            evaluations = metrics.evaluations.sum();
+            iterationsPerSecond = elapsedSeconds > 0 ? evaluations/elapsedSeconds : 0;
+            accepted = metrics.accepted.sum();
+            acceptanceRatio = evaluations > 0 ? (double)accepted/evaluations : 0;
+            restarts = metrics.restarts.sum();
+            solves = metrics.solves.sum();
+            scoreSeconds = metrics.scoreNanos.sum()/1000000000.0;
+            decodeSeconds = metrics.decodeNanos.sum()/1000000000.0;
+            wordCountSeconds = metrics.wordCountNanos.sum()/1000000000.0;
+            synchronized (metrics.trajectory) {
+                bestScores = Collections.unmodifiableList(new ArrayList<>(metrics.trajectory));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("solves=%d restarts=%d evaluations=%d iterations/s=%.0f acceptance=%.4f"
+                    + " score=%.3fs decode=%.3fs wordCount=%.3fs bestScores=%s",
+                    solves, restarts, evaluations, iterationsPerSecond, acceptanceRatio,
+                    scoreSeconds, decodeSeconds, wordCountSeconds, bestScores);
+        }
+    }
+
+    /**
+     * @return the metrics now
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    void addEvaluations(long count, long nanos) {
+        evaluations.add(count);
+        scoreNanos.add(nanos);
+    }
+
+    void addAccepted(long count) {
+        accepted.add(count);
+    }
+
+    void addRestart() {
+        restarts.increment();
+    }
+
+    void addSolve() {
+        solves.increment();
+    }
+
+    void addDecode(long nanos) {
+        decodeNanos.add(nanos);
+    }
+
+    void addWordCount(long nanos) {
+        wordCountNanos.add(nanos);
+    }
+
+    /**
+     * Adds a new best score to the trajectory, dropping the oldest once full.
+     * @param aSolution the new best
+     */
+    void addNewBest(Solution aSolution) {
+        BestScore aBest = new BestScore((System.nanoTime() - startNanos)/1000000,
+                aSolution.getScore(), aSolution.getWordCount());
+        synchronized (trajectory) {
+            if(trajectory.size() == TRAJECTORY_SIZE) {
+                trajectory.removeFirst();
+            }
+            trajectory.addLast(aBest);
+        }
+    }
+}
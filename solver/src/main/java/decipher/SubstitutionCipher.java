@@ -1,11 +1,13 @@
 package decipher;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 import lombok.Data;
 
 /**
@@ -15,8 +17,25 @@ import lombok.Data;
  * <p>First creates</p>
  */
 public class SubstitutionCipher {
+	/** Number of random swaps in a row that do not help before a climb stops */
+	static final int MAX_NO_CHANGE = 10000;
+	/** Most times to start back from the first map */
+	static final int MAX_DO_OVERS = 1000;
+	/** One common word for this many charters of cipher text is a good map */
+	static final int WORDS_TARGET_DIVISOR = 14;
+
 	/** The number of different letters in cipher text */
 	int numOfDiffCharsInCText;
+
+	/** The quadgrams used to score the climbs, these are only read so can be shared */
+	NGram quadGram;
+	/** The bigrams used to score the first map */
+	NGram biGram;
+
+	/** The cipher text being deciphered, one byte per charter */
+	byte[] cipherBytes;
+	/** Reused buffer the cipher text is deciphered into, so trying a map creates no objects */
+	byte[] plainBytes;
 	
     /** The first 100 common words in English (removing any less than 3 charters like: a, an) */
     static List<String> COMMON_WORDS = Arrays.asList("the","and","that","have","for","not","with","you","this","but","his", "from", "they", 
@@ -26,22 +45,116 @@ public class SubstitutionCipher {
                   "use", "two", "how", "our", "work", "first", "well", "way", "even", "new", "want", "because", "any", "these", "give", 
                   "day", "most");
 
+    /**
+     * Creates a solver that loads quadgrams.txt and bigrams.txt when first used.
+     */
+    public SubstitutionCipher() {
+    }
+
+    /**
+     * Creates a solver using already loaded NGrams, so many solvers can share them.
+     * @param quadGram the quadgrams to score with
+     * @param biGram the bigrams to score the first map with
+     */
+    public SubstitutionCipher(NGram quadGram, NGram biGram) {
+        this.quadGram = quadGram;
+        this.biGram = biGram;
+    }
+
+    /** The COMMON_WORDS compiled once for counting, used unless setWordMatcher is called */
+    static final WordMatcher COMMON_WORDS_MATCHER = new WordMatcher(COMMON_WORDS);
+
+    /** Counts the words of wordCount */
+    WordMatcher wordMatcher = COMMON_WORDS_MATCHER;
+
+    /** How each climb (or do over) searches, used unless solve is given one */
+    SearchStrategy strategy = new HillClimbStrategy();
+    /** Where the timings and counts go, null for none */
+    SolverMetrics metrics;
+    /** Solved patterns looked up before searching, null for none */
+    SolutionCache cache;
+    /** Where the random swaps come from, null for ThreadLocalRandom */
+    RandomGenerator random;
+
+    /**
+     * Use another way of searching, like SimulatedAnnealingStrategy.
+     * @param strategy how each climb searches
+     */
+    public void setStrategy(SearchStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Solve another language, using its grams, letter order and common words.
+     * @param language the language model, its files are loaded if not yet
+     * @throws Exception if the language's files can not be loaded
+     */
+    public void setLanguage(LanguageModel language) throws Exception {
+        quadGram = language.getQuadGram();
+        biGram = language.getBiGram();
+        STAND_ORDER = language.getStandOrder();
+        wordMatcher = language.getWordMatcher();
+    }
+
+    /**
+     * Count what the solves do, the same metrics can be given to many solvers.
+     * @param metrics where the timings and counts go, null for none
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Look cipher texts up before searching and keep the ones solved, the same cache can be given to many solvers.
+     * @param cache the solved patterns, null for none
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Use seeded random numbers (like a SplittableRandom) so a solve can be run again the same,
+     * as long as it is not stopped by a timeout. Only use from one thread at a time.
+     * @param random where the random swaps come from, null for ThreadLocalRandom
+     */
+    public void setRandom(RandomGenerator random) {
+        this.random = random;
+    }
+
+    /**
+     * Use other words (a bigger dictionary) in place of the COMMON_WORDS.
+     * @param wordMatcher the compiled words to count
+     */
+    public void setWordMatcher(WordMatcher wordMatcher) {
+        this.wordMatcher = wordMatcher;
+    }
+
     /**
     * Returns the a count of common words of at lease 3 charters, found in the text string.
     * @param text a string of potently English words
     * @return the count of words found
     */
     int wordCount(String text) {
-           int rtnCount = 0;
-           for (String aWord: COMMON_WORDS) {
-        	   rtnCount += text.split(aWord, -1).length-1;
-           }
-           return rtnCount;
+           return wordMatcher.count(text);
+    }
+
+    /**
+     * Returns the a count of common words of at lease 3 charters, found in the text buffer.
+     * All the words are counted in one pass over the buffer without creating any objects.
+     * @param text a buffer of potently English words
+     * @param len the number of bytes in the buffer to look at
+     * @return the count of words found
+     */
+    int wordCount(byte[] text, int len) {
+        return wordMatcher.count(text, 0, len);
     }
 
     /** Ordering of the alphabet according to the letter's use in English */
-    short[] STAND_ORDER = {4, 19, 0, 14, 18, 13, 8, 7, 17, 11, 3, 22, 20, 12, 6, 5, 2, 24, 15, 1, 25, 23, 21, 16, 10, 9 }; 
-    //                     e  t   a  o   s   n   i  h  r   l   d  w   u   m   g  f  c  y   p   b  z   x   v   q   k   j
+    static final short[] ENGLISH_ORDER = {4, 19, 0, 14, 18, 13, 8, 7, 17, 11, 3, 22, 20, 12, 6, 5, 2, 24, 15, 1, 25, 23, 21, 16, 10, 9 }; 
+    //                                    e  t   a  o   s   n   i  h  r   l   d  w   u   m   g  f  c  y   p   b  z   x   v   q   k   j
+
+    /** Ordering of the alphabet according to the letter's use in the language, only read */
+    short[] STAND_ORDER = ENGLISH_ORDER;
 
     /**
      * <p>This class is used to store one of 26 letters and the count of use in the cipher text.
@@ -162,49 +275,78 @@ public class SubstitutionCipher {
      * @return a substituted text
      */
     String subsitute(String text, short[] map) {
-        StringBuffer rtnStr = new StringBuffer();
-        for(byte aChar : text.getBytes()) {
-        	if(aChar < 'a' || aChar > 'z') {
-        		rtnStr.append((char)aChar);
-        	} else {
-        		rtnStr.append((char)('a'+map[aChar-'a']));
-        	}
+        byte[] rtnBytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        subsitute(rtnBytes, rtnBytes.length, map, rtnBytes);
+        return new String(rtnBytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Substitutes the letters with other letters according to the map into a buffer.
+     * Nothing is created so this can be called for every map tried.
+     * Note: text and out can be the same buffer.
+     * @param text the text to use substitute letters in
+     * @param len the number of bytes of text
+     * @param map the map of letters to substitute
+     * @param out the buffer to put the substituted text in, at least len long
+     */
+    void subsitute(byte[] text, int len, short[] map, byte[] out) {
+        byte aChar;
+        for (int i = 0; i < len; i++) {
+            aChar = text[i];
+            if(aChar < 'a' || aChar > 'z') {
+                out[i] = aChar;
+            } else {
+                out[i] = (byte)('a'+map[aChar-'a']);
+            }
         }
-        return rtnStr.toString();
     }
 
     /**
-     * Deciphers cipher text that was enciphered using the substitution cipher.
+     * Sets up the cipher text to decipher and sizes the plainBytes buffer for it.
+     * The buffer is only made bigger, so the same solver can be used over and over.
+     * @param cipherText the cipher text to decipher
+     */
+    void setCipherText(String cipherText) {
+        cipherBytes = cipherText.getBytes(StandardCharsets.ISO_8859_1);
+        if(plainBytes == null || plainBytes.length < cipherBytes.length) {
+            plainBytes = new byte[cipherBytes.length];
+        }
+    }
+
+    /**
+     * Deciphers the cipherBytes with the map into the plainBytes buffer.
+     * @param map the map of letters to use
+     */
+    void decipher(short[] map) {
+        subsitute(cipherBytes, cipherBytes.length, map, plainBytes);
+    }
+
+    /**
+     * @return the plainBytes buffer as a String, only used when reporting a result
+     */
+    String plainText() {
+        return new String(plainBytes, 0, cipherBytes.length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Creates the first map for the cipher text.
      * <ol>
      *    <li>Using single letter frequency analysis creates the first mapping</li>
-     *    <li>Improves the first mapping with bubble sort (n passes)</li>
-     *    <li></li>
-     *    <li>Randomly select two points on the map to swop and check if it improves the resulting deciphered text</li>
+     *    <li>Improves the first mapping with bubble sort (n passes) scored with the bigrams</li>
      * </ol>
-     * to score changes in the map to find the best mapping and decipher the cipher text.
-     * @throws Exception
+     * setCipherText must be called first.
+     * @param cipherText the cipher text to analyze
+     * @return the first map to start the random swapping from
      */
-    void decipherSubstitutionCipher(String cipherText) throws Exception {
-    	// load NGram files
-        NGram quadGram = new NGram("quadgrams.txt");
-        NGram biGram = new NGram("bigrams.txt");
-
-        // create variables outside of the loop
-        long startTime = System.nanoTime(); // used for measure the time taken
+    short[] firstMap(String cipherText) {
+        NGramHistogram biCounts = new NGramHistogram(biGram, cipherBytes, 0, cipherBytes.length);
         short[] firstMap = frequencyAnalysis(cipherText);
-        printMap(firstMap);
-        String bestStr = subsitute(cipherText, firstMap);
-        double bestScore = quadGram.score(bestStr);
-        int bestWordCount = 0;
-        String str;
         double aScore;
-        int numNoChange = 0;
         short temp;
-        int i,j,thisWordCount;
-        int numDoOvers=0;
-        double bestBiScore=biGram.score(bestStr);
+        int i,j;
+        double bestBiScore=biCounts.score(firstMap);
 
-        // first do a bubble sort through the map to improve the firstMap before the random swooping:
+        // do a bubble sort through the map to improve the firstMap before the random swooping:
         for (int pass = 0; pass < 10; pass++) {  // three passes
         	for (int index = 0; index < 25; index++) {
         		// swaps 2 position next to each other in standered order
@@ -212,88 +354,229 @@ public class SubstitutionCipher {
         		i = indexof(STAND_ORDER[index],firstMap);
         		j = indexof(STAND_ORDER[index+1],firstMap);
 
-        		// swap them
-        		temp = firstMap[j];
-        		firstMap[j] = firstMap[i];
-        		firstMap[i] = temp;
-
-        		// decipher with this new mapping
-        		str = subsitute(cipherText, firstMap);
-        		aScore = biGram.score(str);
+        		// score with this new mapping
+        		aScore = bestBiScore + biCounts.swapDelta(firstMap, i, j);
         		if(aScore > bestBiScore) {
-        		    // if better, replace best variables
-        			bestStr = str;
-        			bestScore = quadGram.score(bestStr);
-        			bestBiScore = aScore;
-        		}else{
-        			// if not as good, put them back
+        		    // if better, swap them
         			temp = firstMap[j];
         			firstMap[j] = firstMap[i];
         			firstMap[i] = temp;
+        			bestBiScore = aScore;
         		}
 			}
 		}
+        return firstMap;
+    }
 
-        /********************************************************
-         * This number of words to get from the cipher text.
-         * Too high and it will run forever.
-         * Too low and it will not make sense.
-         ********************************************************/
-        int numWordsTarget = cipherText.length()/14;
-        short[] bestMap = Arrays.copyOf(firstMap, 26);
-        ThreadLocalRandom currentRandon = ThreadLocalRandom.current();
-        while(numNoChange<10000 && numDoOvers < 1000) {
-        	// if bestWordCount is still less than numWordsTarget words and 
-        	// the number of iterations without change is close-to-the-limit of tries
-        	// start back from the firstMap
-        	if(numNoChange>9990 && bestWordCount < numWordsTarget) {
-        		System.out.printf("doOver->%.50s<-,%d<%d\n",bestStr,bestWordCount,numWordsTarget);
-        		printMap(bestMap);
-        		// lets start back from the original mapping
-        		bestMap = Arrays.copyOf(firstMap, 26);
-        		bestStr = subsitute(cipherText, bestMap);
-        		bestScore = quadGram.score(bestStr);
-        		bestWordCount=wordCount(bestStr);
-        		numNoChange = 0;
-        		++numDoOvers;
-        	}
+    /**
+     * This number of words to get from the cipher text.
+     * Too high and it will run forever.
+     * Too low and it will not make sense.
+     * @param cipherText the cipher text to decipher
+     * @return the number of common words a good map should give
+     */
+    static int numWordsTarget(String cipherText) {
+        return cipherText.length()/WORDS_TARGET_DIVISOR;
+    }
 
-        	// randomly swap two charter mappings
-        	i = currentRandon.nextInt(0, 26);
-        	j = currentRandon.nextInt(0, 26);
-        	while(i==j)
-        		j = currentRandon.nextInt(0, 26);
+    /**
+     * Loads quadgrams.txt and bigrams.txt if this solver was not given NGrams.
+     * @throws Exception if a file is missing
+     */
+    void loadNGrams() throws Exception {
+        if(quadGram == null) {
+            quadGram = NGram.load("quadgrams.txt");
+            biGram = NGram.load("bigrams.txt");
+        }
+    }
 
-        	// swap
-        	temp = bestMap[j];
-        	bestMap[j] = bestMap[i];
-        	bestMap[i] = temp;
+    /**
+     * Deciphers cipher text that was enciphered using the substitution cipher, without printing.
+     * See {@link #decipherSubstitutionCipher(String)} for how.
+     * @param cipherText the lower case cipher text
+     * @return the best solution found, with its plan text
+     * @throws Exception if the NGram files can not be loaded
+     */
+    public Solution solve(String cipherText) throws Exception {
+        return solve(cipherText, strategy, false, null);
+    }
+
+    /**
+     * Deciphers cipher text, stopping early (with the best climb so far) at the deadline
+     * or maximum score evaluations of the handle, or when it is cancelled.
+     * The handle also gives the best so far while this runs.
+     * @param cipherText the lower case cipher text
+     * @param handle what bounds the solve
+     * @return the solution of the climb that found enough common words (converged)
+     *         or else the best so far, with its plan text
+     * @throws Exception if the NGram files can not be loaded
+     */
+    public Solution solve(String cipherText, SolveHandle handle) throws Exception {
+        return solve(cipherText, strategy, false, handle);
+    }
+
+    /**
+     * Deciphers cipher text searching with the strategy given, without printing.
+     * @param cipherText the lower case cipher text
+     * @param strategy how each climb searches
+     * @return the best solution found, with its plan text
+     * @throws Exception if the NGram files can not be loaded
+     */
+    public Solution solve(String cipherText, SearchStrategy strategy) throws Exception {
+        return solve(cipherText, strategy, false, null);
+    }
 
-        	str = subsitute(cipherText, bestMap);
-        	thisWordCount = wordCount(str);
+    /**
+     * Deciphers cipher text like {@link #solve(String, SolveHandle)} searching with the strategy given.
+     * @param cipherText the lower case cipher text
+     * @param strategy how each climb searches
+     * @param handle what bounds the solve
+     * @return the converged solution or else the best so far, with its plan text
+     * @throws Exception if the NGram files can not be loaded
+     */
+    public Solution solve(String cipherText, SearchStrategy strategy, SolveHandle handle) throws Exception {
+        return solve(cipherText, strategy, false, handle);
+    }
 
-        	if(thisWordCount>bestWordCount) {
-        		// System.out.printf("%2d->%.30s<-\n",thisWordCount,str);
-        		bestWordCount=thisWordCount;
+    /**
+     * Deciphers cipher text that was enciphered using the substitution cipher.
+     * <ol>
+     *    <li>Looks the cipher text's pattern up in the cache, if there is one</li>
+     *    <li>Creates the first map (see firstMap)</li>
+     *    <li>Climbs from the first map (see SearchStrategy, a hill climb by default)</li>
+     *    <li>If the best map does not give numWordsTarget common words, do over from the first map</li>
+     *    <li>Unless the handle says to stop</li>
+     * </ol>
+     * to score changes in the map to find the best mapping and decipher the cipher text.
+     * @param cipherText the lower case cipher text
+     * @param strategy how each climb searches
+     * @param verbose true to print the first map and each do over
+     * @param handle what bounds the solve, null for nothing
+     * @return the solution of the climb that found enough common words, or else the best climb
+     *         (highest score) if none did or the handle stopped the solve, with its plan text
+     * @throws Exception if the NGram files can not be loaded
+     */
+    private Solution solve(String cipherText, SearchStrategy strategy, boolean verbose, SolveHandle handle)
+            throws Exception {
+        if(cache != null) {
+            Solution cached = cache.get(cipherText);
+            if(cached != null) {
+                return cached;
+            }
+        }
+        SolverEvents.Solve solveEvent = new SolverEvents.Solve();
+        solveEvent.begin();
+        loadNGrams();
+        setCipherText(cipherText);
+        NGramHistogram quadCounts = new NGramHistogram(quadGram, cipherBytes, 0, cipherBytes.length);
+        short[] firstMap = firstMap(cipherText);
+        if(verbose) {
+            printMap(firstMap);
+        }
+
+        int numWordsTarget = numWordsTarget(cipherText);
+        SearchContext context = new SearchContext(quadCounts, this,
+                random != null ? random : ThreadLocalRandom.current(), metrics, handle);
+        Solution best = strategy.search(context, firstMap);
+        Solution bestSoFar = newBest(null, best, handle);
+        int numDoOvers=0;
+        // if the bestWordCount is still less than numWordsTarget words
+        // start back from the firstMap
+        while(best.getWordCount() < numWordsTarget && numDoOvers < MAX_DO_OVERS && !context.isStopped()) {
+        	SolverEvents.restart(numDoOvers + 1, best);
+        	if(metrics != null) {
+        		metrics.addRestart();
         	}
-        	aScore = quadGram.score(str);
-        	if(aScore > bestScore) {
-        		bestStr = str;
-        		bestScore = aScore;
-        		numNoChange = 0;
-        	}else{
-        		// put them back
-        		temp = bestMap[j];
-        		bestMap[j] = bestMap[i];
-        		bestMap[i] = temp;
-        		numNoChange++;
+        	if(verbose) {
+        		decipher(best.getKey());
+        		System.out.printf("doOver->%.50s<-,%d<%d\n",plainText(),best.getWordCount(),numWordsTarget);
+        		printMap(best.getKey());
         	}
+        	best = strategy.search(context, firstMap);
+        	bestSoFar = newBest(bestSoFar, best, handle);
+        	++numDoOvers;
+        }
+        context.flushMetrics();
+        boolean converged = best.getWordCount() >= numWordsTarget;
+        if(!converged) {
+            best = bestSoFar;
+        }
+        decipher(best.getKey());
+        Solution aSolution = new Solution(best.getKey(), best.getScore(), best.getWordCount(), plainText(),
+                context.getNumEvaluations(), converged);
+        solved(solveEvent, cipherText, strategy, numDoOvers, aSolution, metrics);
+        if(cache != null) {
+            cache.put(cipherText, aSolution);
+        }
+        return aSolution;
+    }
+
+    /**
+     * Records a climb that is better than the best so far, for the metrics, events and handle.
+     * @param bestSoFar the best climb so far, null for none
+     * @param aSolution the climb just done
+     * @param handle what bounds the solve, given the best with its plan text, null for none
+     * @return the best climb now
+     */
+    private Solution newBest(Solution bestSoFar, Solution aSolution, SolveHandle handle) {
+        if(bestSoFar != null && !aSolution.isBetterThan(bestSoFar)) {
+            return bestSoFar;
+        }
+        if(handle != null) {
+            decipher(aSolution.getKey());
+            handle.offer(new Solution(aSolution.getKey(), aSolution.getScore(), aSolution.getWordCount(),
+                    plainText(), handle.getNumEvaluations()));
         }
+        SolverEvents.newBest(aSolution);
+        if(metrics != null) {
+            metrics.addNewBest(aSolution);
+        }
+        return aSolution;
+    }
+
+    /**
+     * Records a finished solve, for the metrics and events.
+     * @param solveEvent the event begun when the solve started
+     * @param cipherText the cipher text solved
+     * @param strategy how the climbs searched
+     * @param numDoOvers the number of do overs
+     * @param aSolution the solution returned
+     * @param metrics where the counts go, null for none
+     */
+    static void solved(SolverEvents.Solve solveEvent, String cipherText, SearchStrategy strategy,
+            int numDoOvers, Solution aSolution, SolverMetrics metrics) {
+        if(metrics != null) {
+            metrics.addSolve();
+        }
+        solveEvent.end();
+        if(solveEvent.shouldCommit()) {
+            solveEvent.length = cipherText.length();
+            solveEvent.strategy = strategy.getClass().getSimpleName();
+            solveEvent.restarts = numDoOvers;
+            solveEvent.evaluations = aSolution.getNumEvaluations();
+            solveEvent.score = aSolution.getScore();
+            solveEvent.wordCount = aSolution.getWordCount();
+            solveEvent.commit();
+        }
+    }
+
+    /**
+     * Deciphers cipher text that was enciphered using the substitution cipher,
+     * printing how it goes and the result.
+     * See ParallelSolver to do the climbs on all the cores.
+     * @throws Exception
+     */
+    void decipherSubstitutionCipher(String cipherText) throws Exception {
+    	// load NGram files
+        loadNGrams();
+
+        long startTime = System.nanoTime(); // used for measure the time taken
+        Solution best = solve(cipherText, strategy, true, null);
         long endtime = System.nanoTime();
         System.out.printf("Time taken: %f seconds\n",((double)(endtime-startTime))/1000000000.0);
-        System.out.printf("bestWordCount->%d<-\n",bestWordCount);
-        System.out.printf("->%s<-\n",bestStr);
-        printMap(bestMap);
+        System.out.printf("bestWordCount->%d<-\n",best.getWordCount());
+        System.out.printf("->%s<-\n",best.getPlainText());
+        printMap(best.getKey());
     }
 
     /**
@@ -0,0 +1,211 @@
+package decipher;
+
+import java.util.Arrays;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>Scores LANES (8) grams at once with the Vector API: the plan letters of 8 grams are
+ * gathered from the map, packed into 8 indexes, the 8 log values gathered from the NGram
+ * and the count times log value added into two 4 lane double sums. The last few grams
+ * and the final adding up are done one at a time, in the same order as
+ * {@link ScalarScoringKernel}, so the results are exactly the same.</p>
+ *
+ * <p>Only loaded (see ScoringKernel.create) when the jdk.incubator.vector module is there.</p>
+ */
+final class VectorScoringKernel implements ScoringKernel {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_256;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_256;
+
+    /** The arrays each call works in, per thread so scoring makes no garbage */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * What a thread's score and swapDelta calls work in.
+     */
+    private static final class Scratch {
+        /** The map as ints, the gathers need int arrays */
+        final int[] mapInts = new int[26];
+        /** The map as ints with the two letters swapped */
+        final int[] swapped = new int[26];
+        /** The packed logProbs indexes, before the swap for swapDelta, made bigger as needed */
+        int[] oldIndexes = new int[LANES];
+        /** The packed logProbs indexes after the swap, made bigger as needed */
+        int[] newIndexes = new int[LANES];
+        /** The LANES sums */
+        final double[] sums = new double[LANES];
+    }
+
+    /**
+     * @return true if the CPU has at least 256 bit vectors
+     */
+    static boolean isSupported() {
+        return IntVector.SPECIES_PREFERRED.vectorBitSize() >= 256;
+    }
+
+    @Override
+    public double score(NGramHistogram histogram, short[] map) {
+        Scratch scratch = SCRATCH.get();
+        int[] mapInts = toInts(map, scratch.mapInts);
+        int[] indexes = scratch.oldIndexes;
+        int[] counts = histogram.counts;
+        float[] logProbs = histogram.logProbs;
+        int[][] positionLetters = histogram.positionLetters;
+        int length = histogram.length;
+        int numGrams = histogram.numGrams;
+        int upper = numGrams - numGrams % LANES;
+        DoubleVector low = DoubleVector.zero(DOUBLES);
+        DoubleVector high = DoubleVector.zero(DOUBLES);
+        IntVector index;
+        int g;
+        for (g = 0; g < upper; g += LANES) {
+            index = IntVector.zero(INTS);
+            for (int k = 0; k < length; k++) {
+                index = index.mul(26).add(IntVector.fromArray(INTS, mapInts, 0, positionLetters[k], g));
+            }
+            index.intoArray(indexes, 0);
+            FloatVector logs = FloatVector.fromArray(FLOATS, logProbs, 0, indexes, 0);
+            IntVector gramCounts = IntVector.fromArray(INTS, counts, g);
+            low = low.add(toDoubles(gramCounts, 0).mul(toDoubles(logs, 0)));
+            high = high.add(toDoubles(gramCounts, 1).mul(toDoubles(logs, 1)));
+        }
+        double[] sums = scratch.sums;
+        low.intoArray(sums, 0);
+        high.intoArray(sums, LANES/2);
+        for (; g < numGrams; g++) {
+            sums[g % LANES] += (double)counts[g]*logProbs[histogram.plainIndex(g, map, -1, -1)];
+        }
+        double score = histogram.constant;
+        for (double aSum : sums) {
+            score += aSum;
+        }
+        return score;
+    }
+
+    @Override
+    public double swapDelta(NGramHistogram histogram, short[] map, int i, int j) {
+        Scratch scratch = SCRATCH.get();
+        int[] mapInts = toInts(map, scratch.mapInts);
+        int[] swapped = toInts(map, scratch.swapped);
+        swapped[i] = mapInts[j];
+        swapped[j] = mapInts[i];
+        int most = Math.max(histogram.gramsWithLetter[i].length, histogram.gramsWithLetter[j].length);
+        if(scratch.oldIndexes.length < most) {
+            scratch.oldIndexes = new int[most];
+            scratch.newIndexes = new int[most];
+        }
+        double[] sums = scratch.sums;
+        Arrays.fill(sums, 0.0);
+        // first the grams holding i, then those holding j but not i (a loop so each is inlined once)
+        for (int pass = 0; pass < 2; pass++) {
+            int letter = pass == 0 ? i : j;
+            int skipMask = pass == 0 ? 0 : 1 << i;
+            packIndexes(histogram, mapInts, swapped, letter, skipMask, scratch.oldIndexes, scratch.newIndexes);
+            addSwapDeltas(histogram, map, i, j, letter, skipMask, scratch.oldIndexes, scratch.newIndexes, sums);
+        }
+        double delta = 0.0;
+        for (double aSum : sums) {
+            delta += aSum;
+        }
+        return delta;
+    }
+
+    /**
+     * Packs the plan text grams, before and after the swap, of the grams holding a letter.
+     * This and addSwapDeltas are kept apart as one method doing both is too big for the JIT
+     * to turn all its vectors into registers. No vector masks are used as JDK 17 does not
+     * keep 256 bit masks in registers on AVX-512 CPUs.
+     * @param mapInts the map as ints
+     * @param swapped the map as ints with map[i] and map[j] swapped
+     * @param letter the grams holding this letter
+     * @param skipMask grams holding any of these letters get the same index before and after
+     * @param oldIndexes set to the logProbs index of each gram before the swap
+     * @param newIndexes set to the logProbs index of each gram after the swap
+     */
+    private static void packIndexes(NGramHistogram histogram, int[] mapInts, int[] swapped, int letter, int skipMask,
+            int[] oldIndexes, int[] newIndexes) {
+        int length = histogram.length;
+        int[][] positionLetters = histogram.positionLettersWithLetter[letter];
+        int[] masks = histogram.masksWithLetter[letter];
+        int upper = masks.length - masks.length % LANES;
+        IntVector oldIndex, newIndex, skipped;
+        for (int g = 0; g < upper; g += LANES) {
+            oldIndex = IntVector.zero(INTS);
+            newIndex = IntVector.zero(INTS);
+            for (int k = 0; k < length; k++) {
+                oldIndex = oldIndex.mul(26).add(IntVector.fromArray(INTS, mapInts, 0, positionLetters[k], g));
+                newIndex = newIndex.mul(26).add(IntVector.fromArray(INTS, swapped, 0, positionLetters[k], g));
+            }
+            // skipped grams keep their old index so they add 0: skipped is 1 for them and 0 for the rest
+            skipped = IntVector.fromArray(INTS, masks, g).and(skipMask).min(1);
+            newIndex.add(oldIndex.sub(newIndex).mul(skipped)).intoArray(newIndexes, g);
+            oldIndex.intoArray(oldIndexes, g);
+        }
+    }
+
+    /**
+     * Adds how much the score of each gram holding a letter changes with the swap to the sums.
+     * @param letter the grams holding this letter
+     * @param skipMask grams holding any of these letters are left out
+     * @param oldIndexes the logProbs index of each gram before the swap, from packIndexes
+     * @param newIndexes the logProbs index of each gram after the swap, from packIndexes
+     * @param sums the LANES sums, gram g of the letter's grams goes in sums[g % LANES]
+     */
+    private static void addSwapDeltas(NGramHistogram histogram, short[] map, int i, int j, int letter, int skipMask,
+            int[] oldIndexes, int[] newIndexes, double[] sums) {
+        float[] logProbs = histogram.logProbs;
+        int[] grams = histogram.gramsWithLetter[letter];
+        double[] counts = histogram.countsWithLetter[letter];
+        int[] masks = histogram.masksWithLetter[letter];
+        int upper = grams.length - grams.length % LANES;
+        DoubleVector low = DoubleVector.fromArray(DOUBLES, sums, 0);
+        DoubleVector high = DoubleVector.fromArray(DOUBLES, sums, LANES/2);
+        FloatVector oldLogs, newLogs;
+        int g;
+        for (g = 0; g < upper; g += LANES) {
+            oldLogs = FloatVector.fromArray(FLOATS, logProbs, 0, oldIndexes, g);
+            newLogs = FloatVector.fromArray(FLOATS, logProbs, 0, newIndexes, g);
+            low = low.add(DoubleVector.fromArray(DOUBLES, counts, g)
+                    .mul(toDoubles(newLogs, 0).sub(toDoubles(oldLogs, 0))));
+            high = high.add(DoubleVector.fromArray(DOUBLES, counts, g + LANES/2)
+                    .mul(toDoubles(newLogs, 1).sub(toDoubles(oldLogs, 1))));
+        }
+        low.intoArray(sums, 0);
+        high.intoArray(sums, LANES/2);
+        for (; g < grams.length; g++) {
+            if((masks[g] & skipMask) == 0) {
+                sums[g % LANES] += counts[g]*((double)logProbs[histogram.plainIndex(grams[g], map, i, j)]
+                        - logProbs[histogram.plainIndex(grams[g], map, -1, -1)]);
+            }
+        }
+    }
+
+    /**
+     * @return half (part 0 the low lanes, 1 the high) of an int vector as doubles
+     */
+    private static DoubleVector toDoubles(IntVector values, int part) {
+        return (DoubleVector)values.convertShape(VectorOperators.I2D, DOUBLES, part);
+    }
+
+    /**
+     * @return half (part 0 the low lanes, 1 the high) of a float vector as doubles
+     */
+    private static DoubleVector toDoubles(FloatVector values, int part) {
+        return (DoubleVector)values.convertShape(VectorOperators.F2D, DOUBLES, part);
+    }
+
+    /**
+     * @return the map copied into the ints
+     */
+    private static int[] toInts(short[] map, int[] ints) {
+        for (int letter = 0; letter < 26; letter++) {
+            ints[letter] = map[letter];
+        }
+        return ints;
+    }
+}
@@ -0,0 +1,128 @@
+package decipher;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * <p>Counts how many times a list of words are found in a text in one pass over the text.</p>
+ *
+ * <p>The words are compiled once into an Aho-Corasick automaton: a trie of the words where
+ * every state also knows where to go on each letter when the word it is following breaks
+ * off. Each byte of the text is then just one table lookup no matter how many words there
+ * are, so a bigger word list does not make counting slower.</p>
+ * 
+ * <p>Only a to z are letters, any other byte starts matching over.
+ * Like wordCount always has, words inside other words are counted ("there" counts
+ * "the", "her" and "there"). Unlike String.split, a word overlapping itself is counted
+ * each time ("thathat" has "that" twice).</p>
+ * See <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho-Corasick wiki</a>
+ */
+public class WordMatcher {
+
+    /** Where to go from each state on each letter, state*26 + letter */
+    private final int[] next;
+    /** The number of words ending at each state, including shorter words ending there */
+    private final int[] matches;
+
+    /**
+     * Compiles the words.
+     * @param words the lower case words to count
+     */
+    public WordMatcher(Collection<String> words) {
+        int maxStates = 1;
+        for (String aWord : words) {
+            maxStates += aWord.length();
+        }
+        int[] trie = new int[maxStates*26];
+        Arrays.fill(trie, -1);
+        int[] wordMatches = new int[maxStates];
+        int numStates = 1;
+
+        // first build the trie of the words, state 0 being the start
+        int state, letter;
+        for (String aWord : words) {
+            if(aWord.isEmpty()) {
+                throw new IllegalArgumentException("Can not count an empty word");
+            }
+            state = 0;
+            for (int i = 0; i < aWord.length(); i++) {
+                letter = aWord.charAt(i) - 'a';
+                if(letter < 0 || letter >= 26) {
+                    throw new IllegalArgumentException("Words must be only a to z: " + aWord);
+                }
+                if(trie[state*26 + letter] < 0) {
+                    trie[state*26 + letter] = numStates++;
+                }
+                state = trie[state*26 + letter];
+            }
+            wordMatches[state]++;
+        }
+
+        // now go though the states breadth first filling in the missing letters
+        // with where the longest ending of this state that is in the trie goes.
+        next = Arrays.copyOf(trie, numStates*26);
+        matches = Arrays.copyOf(wordMatches, numStates);
+        int[] fail = new int[numStates];
+        int[] queue = new int[numStates];
+        int head = 0, tail = 0;
+        int child;
+        for (letter = 0; letter < 26; letter++) {
+            child = next[letter];
+            if(child < 0) {
+                next[letter] = 0;
+            } else {
+                fail[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while(head < tail) {
+            state = queue[head++];
+            for (letter = 0; letter < 26; letter++) {
+                child = next[state*26 + letter];
+                if(child < 0) {
+                    next[state*26 + letter] = next[fail[state]*26 + letter];
+                } else {
+                    fail[child] = next[fail[state]*26 + letter];
+                    // fail[child] is shorter so its matches are already totaled
+                    matches[child] += matches[fail[child]];
+                    queue[tail++] = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the words found in part of the text buffer, without creating any objects.
+     * @param text a buffer of potently English words
+     * @param offset where in the buffer to start
+     * @param len the number of bytes to look at
+     * @return the count of words found
+     */
+    public int count(byte[] text, int offset, int len) {
+        int rtnCount = 0;
+        int state = 0;
+        int letter;
+        int end = offset + len;
+        for (int i = offset; i < end; i++) {
+            letter = text[i] - 'a';
+            if(letter < 0 || letter >= 26) {
+                state = 0;
+            } else {
+                state = next[state*26 + letter];
+                rtnCount += matches[state];
+            }
+        }
+        return rtnCount;
+    }
+
+    /**
+     * Counts the words found in the text.
+     * @param text a string of potently English words
+     * @return the count of words found
+     */
+    public int count(String text) {
+        byte[] textBytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        return count(textBytes, 0, textBytes.length);
+    }
+}
@@ -0,0 +1,102 @@
+package decipher;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>Dictionary words grouped by their letter pattern, so the words a cipher word could be
+ * are found with one lookup.</p>
+ *
+ * <p>The pattern of a word renumbers its letters by first appearance, the same as
+ * SolutionCache does for whole texts: "that" is "abca", as are "high" and "dead". A
+ * substitution keeps the pattern so a cipher word can only be a dictionary word with
+ * the same pattern. Words keep the order of the dictionary, so list the most used first.</p>
+ */
+public class WordPatternIndex {
+
+    /** The dictionary file looked for in the run directory */
+    static final String DICTIONARY_FILE = "dictionary.txt";
+    /** Common short words added to COMMON_WORDS when there is no dictionary file */
+    static final List<String> SHORT_WORDS = Arrays.asList("a", "i", "of", "to", "in", "is", "it", "be", "as",
+            "at", "by", "on", "or", "we", "he", "an", "do", "if", "me", "my", "no", "so", "up", "us", "go");
+
+    /** Pattern to the dictionary words with that pattern */
+    private final Map<String, List<String>> wordsByPattern = new HashMap<>();
+    /** The number of words indexed */
+    private int numWords;
+
+    /**
+     * Indexes the words, anything that is not only letters is left out and case is ignored.
+     * @param words the dictionary, most used first
+     */
+    public WordPatternIndex(Collection<String> words) {
+        for (String aWord : new LinkedHashSet<>(words)) {
+            aWord = aWord.trim().toLowerCase(Locale.ROOT);
+            if(aWord.isEmpty() || !aWord.chars().allMatch(c -> c >= 'a' && c <= 'z')) {
+                continue;
+            }
+            wordsByPattern.computeIfAbsent(pattern(aWord), p -> new ArrayList<>()).add(aWord);
+            numWords++;
+        }
+    }
+
+    /**
+     * Loads the dictionary.txt in the run directory (one word a line, most used first),
+     * or if there is none uses COMMON_WORDS and some short words.
+     * @return the index
+     * @throws Exception if the dictionary can not be read
+     */
+    public static WordPatternIndex load() throws Exception {
+        File dictionary = new File(DICTIONARY_FILE);
+        if(dictionary.exists()) {
+            return load(dictionary.getPath());
+        }
+        List<String> words = new ArrayList<>(SubstitutionCipher.COMMON_WORDS);
+        words.addAll(SHORT_WORDS);
+        return new WordPatternIndex(words);
+    }
+
+    /**
+     * @param fileName the dictionary, one word a line, most used first
+     * @return the index
+     * @throws Exception if the dictionary can not be read
+     */
+    public static WordPatternIndex load(String fileName) throws Exception {
+        return new WordPatternIndex(Files.readAllLines(new File(fileName).toPath(), StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * @param word a lower case word
+     * @return its letter pattern, like abca for that
+     */
+    static String pattern(String word) {
+        byte[] text = word.getBytes(StandardCharsets.ISO_8859_1);
+        SolutionCache.pattern(text, new short[26]);
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param pattern a letter pattern
+     * @return the dictionary words with the pattern, most used first, empty if none
+     */
+    public List<String> get(String pattern) {
+        return wordsByPattern.getOrDefault(pattern, Collections.emptyList());
+    }
+
+    /**
+     * @return the number of words indexed
+     */
+    public int getNumWords() {
+        return numWords;
+    }
+}
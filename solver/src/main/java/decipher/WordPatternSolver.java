@@ -0,0 +1,364 @@
+package decipher;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Deciphers cipher text that kept its word spaces by matching the cipher words to
+ * dictionary words, instead of thousands of random swaps.</p>
+ * <ol>
+ *    <li>Each cipher word can only be a dictionary word with the same letter pattern
+ *    (see WordPatternIndex), so the heaviest (length times uses) MAX_CIPHER_WORDS cipher
+ *    words are each given their list of candidate words</li>
+ *    <li>A backtracking search picks the cipher word with the fewest candidates that still
+ *    agree with the letters decided so far, tries each of them, and also tries leaving the
+ *    word out (names and words not in the dictionary). Picking the most constrained word
+ *    first means a wrong guess runs out of candidates quickly. The search keeps the letters
+ *    that match the most (by weight) and stops after MAX_NODES tries</li>
+ *    <li>If some cipher letters were not in any matched word, they are given the unused plan
+ *    letters and a hill climb on the quadgrams, only swapping those letters, settles them</li>
+ * </ol>
+ * <p>Like SubstitutionCipher, a solver holds buffers so use one a thread. Nothing is random
+ * (the climb tries every pair in order), so there is no setRandom and the same cipher text
+ * always gives the same solution.</p>
+ */
+public class WordPatternSolver {
+
+    /** The most cipher words searched, the rest just follow */
+    static final int MAX_CIPHER_WORDS = 40;
+    /** The most search tries before taking the best found */
+    static final int MAX_NODES = 200000;
+
+    /** The quadgrams used to score the climb */
+    private final NGram quadGram;
+    /** The bigrams, only passed on to the climber */
+    private final NGram biGram;
+    /** The dictionary words by pattern */
+    private final WordPatternIndex index;
+
+    /** The cipher words searched, as letters 0 to 25 */
+    private byte[][] words;
+    /** Each cipher word's length times uses */
+    private int[] weights;
+    /** Each cipher word's dictionary candidates, as letters 0 to 25 */
+    private byte[][][] candidates;
+    /** True for the cipher words decided (matched or left out) */
+    private boolean[] done;
+    /** The plan letter of each cipher letter, -1 if not decided */
+    private final short[] toPlain = new short[26];
+    /** The cipher letter of each plan letter, -1 if not used */
+    private final short[] toCipher = new short[26];
+    /** The cipher letters decided, in order, so they can be undone */
+    private final int[] decided = new int[26];
+    /** The number of cipher letters decided */
+    private int numDecided;
+    /** The number of search tries so far */
+    private int numNodes;
+    /** The weight of the best matching so far */
+    private int bestWeight;
+    /** The toPlain of the best matching so far */
+    private final short[] bestToPlain = new short[26];
+
+    /**
+     * Constructor
+     * @param quadGram the quadgrams to score the climb with
+     * @param biGram the bigrams used by the climber's first map
+     * @param index the dictionary words by pattern
+     */
+    public WordPatternSolver(NGram quadGram, NGram biGram, WordPatternIndex index) {
+        this.quadGram = quadGram;
+        this.biGram = biGram;
+        this.index = index;
+    }
+
+    /**
+     * Deciphers cipher text with its word spaces (or any other non-letters between words).
+     * @param cipherText the lower case cipher text
+     * @return the solution with its plan text, the evaluations are only those of the climb
+     */
+    public Solution solve(String cipherText) {
+        findWords(cipherText);
+        Arrays.fill(toPlain, (short)-1);
+        Arrays.fill(toCipher, (short)-1);
+        Arrays.fill(bestToPlain, (short)-1);
+        done = new boolean[words.length];
+        numDecided = 0;
+        numNodes = 0;
+        bestWeight = -1;
+        int totalWeight = 0;
+        for (int aWeight : weights) {
+            totalWeight += aWeight;
+        }
+        search(0, totalWeight);
+
+        // give the cipher letters not matched the plan letters left, most used first
+        SubstitutionCipher aSolver = new SubstitutionCipher(quadGram, biGram);
+        aSolver.setCipherText(cipherText);
+        int[] counts = new int[26];
+        int letter;
+        for (byte aByte : aSolver.cipherBytes) {
+            letter = aByte - 'a';
+            if(letter >= 0 && letter < 26) {
+                counts[letter]++;
+            }
+        }
+        short[] key = bestToPlain.clone();
+        boolean[] used = new boolean[26];
+        boolean unresolved = false;
+        for (letter = 0; letter < 26; letter++) {
+            if(key[letter] >= 0) {
+                used[key[letter]] = true;
+            } else if(counts[letter] > 0) {
+                unresolved = true;
+            }
+        }
+        Integer[] byCount = new Integer[26];
+        for (letter = 0; letter < 26; letter++) {
+            byCount[letter] = letter;
+        }
+        Arrays.sort(byCount, (a, b) -> counts[b] - counts[a]);
+        int order = 0;
+        for (int cipherLetter : byCount) {
+            if(key[cipherLetter] < 0) {
+                while(used[SubstitutionCipher.ENGLISH_ORDER[order]]) {
+                    order++;
+                }
+                key[cipherLetter] = SubstitutionCipher.ENGLISH_ORDER[order];
+                used[key[cipherLetter]] = true;
+            }
+        }
+
+        NGramHistogram quadCounts = new NGramHistogram(quadGram, aSolver.cipherBytes, 0, aSolver.cipherBytes.length);
+        // the climb draws no random numbers, the context just needs some
+        SearchContext context = new SearchContext(quadCounts, aSolver, ThreadLocalRandom.current());
+        double score = context.score(key);
+        if(unresolved) {
+            score = climb(context, key, score);
+        }
+        int wordCount = context.wordCount(key);
+        return new Solution(key, score, wordCount, aSolver.plainText(), context.getNumEvaluations(),
+                wordCount >= SubstitutionCipher.numWordsTarget(cipherText));
+    }
+
+    /**
+     * Climbs by swapping only the cipher letters not matched (including those not in the
+     * cipher text, which hold the spare plan letters), trying every pair until none helps.
+     * @param context scores the swaps
+     * @param key the map to climb from, changed to the best found
+     * @param score the score of the key
+     * @return the score of the best map
+     */
+    private double climb(SearchContext context, short[] key, double score) {
+        int[] free = new int[26];
+        int numFree = 0;
+        for (int letter = 0; letter < 26; letter++) {
+            if(bestToPlain[letter] < 0) {
+                free[numFree++] = letter;
+            }
+        }
+        double delta;
+        boolean better = true;
+        while(better) {
+            better = false;
+            for (int i = 0; i < numFree; i++) {
+                for (int j = i + 1; j < numFree; j++) {
+                    delta = context.swapDelta(key, free[i], free[j]);
+                    if(delta > 0) {
+                        context.swap(key, free[i], free[j]);
+                        score += delta;
+                        better = true;
+                    }
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Splits the cipher text into words (runs of a to z) and keeps the heaviest that
+     * have dictionary candidates.
+     * @param cipherText the lower case cipher text
+     */
+    private void findWords(String cipherText) {
+        Map<String, Integer> uses = new HashMap<>();
+        int start = -1;
+        char aChar;
+        for (int i = 0; i <= cipherText.length(); i++) {
+            aChar = i < cipherText.length() ? cipherText.charAt(i) : ' ';
+            if(aChar >= 'a' && aChar <= 'z') {
+                if(start < 0) {
+                    start = i;
+                }
+            } else if(start >= 0) {
+                uses.merge(cipherText.substring(start, i), 1, Integer::sum);
+                start = -1;
+            }
+        }
+        List<String> cipherWords = new ArrayList<>();
+        for (String aWord : uses.keySet()) {
+            if(!index.get(WordPatternIndex.pattern(aWord)).isEmpty()) {
+                cipherWords.add(aWord);
+            }
+        }
+        cipherWords.sort((a, b) -> uses.get(b)*b.length() - uses.get(a)*a.length());
+        int numWords = Math.min(MAX_CIPHER_WORDS, cipherWords.size());
+        words = new byte[numWords][];
+        weights = new int[numWords];
+        candidates = new byte[numWords][][];
+        for (int w = 0; w < numWords; w++) {
+            String aWord = cipherWords.get(w);
+            words[w] = letters(aWord);
+            weights[w] = uses.get(aWord)*aWord.length();
+            List<String> matches = index.get(WordPatternIndex.pattern(aWord));
+            candidates[w] = new byte[matches.size()][];
+            for (int c = 0; c < matches.size(); c++) {
+                candidates[w][c] = letters(matches.get(c));
+            }
+        }
+    }
+
+    /**
+     * Tries matching the words not yet decided.
+     * @param matchedWeight the weight of the words matched so far
+     * @param remainingWeight the weight of the words not yet decided
+     */
+    private void search(int matchedWeight, int remainingWeight) {
+        numNodes++;
+        if(matchedWeight > bestWeight) {
+            bestWeight = matchedWeight;
+            System.arraycopy(toPlain, 0, bestToPlain, 0, 26);
+        }
+        if(numNodes >= MAX_NODES || matchedWeight + remainingWeight <= bestWeight) {
+            return;
+        }
+
+        // the word with the fewest candidates that agree with the letters decided so far
+        int pick = -1;
+        int pickCount = Integer.MAX_VALUE;
+        int count;
+        for (int w = 0; w < words.length && pickCount > 0; w++) {
+            if(done[w]) {
+                continue;
+            }
+            count = 0;
+            for (int c = 0; c < candidates[w].length && count < pickCount; c++) {
+                if(agrees(words[w], candidates[w][c])) {
+                    count++;
+                }
+            }
+            if(count < pickCount) {
+                pick = w;
+                pickCount = count;
+            }
+        }
+        if(pick < 0) {
+            return;
+        }
+
+        done[pick] = true;
+        int numBefore;
+        for (int c = 0; c < candidates[pick].length && pickCount > 0 && numNodes < MAX_NODES; c++) {
+            if(agrees(words[pick], candidates[pick][c])) {
+                numBefore = numDecided;
+                decide(words[pick], candidates[pick][c]);
+                search(matchedWeight + weights[pick], remainingWeight - weights[pick]);
+                undo(numBefore);
+            }
+        }
+        // or the word is not in the dictionary
+        search(matchedWeight, remainingWeight - weights[pick]);
+        done[pick] = false;
+    }
+
+    /**
+     * @param cipherWord the cipher word
+     * @param plainWord a dictionary word with the same pattern
+     * @return true if the letters decided so far allow the cipher word to be the plan word
+     */
+    private boolean agrees(byte[] cipherWord, byte[] plainWord) {
+        int cipherLetter, plainLetter;
+        for (int i = 0; i < cipherWord.length; i++) {
+            cipherLetter = cipherWord[i];
+            plainLetter = plainWord[i];
+            if(toPlain[cipherLetter] >= 0 ? toPlain[cipherLetter] != plainLetter
+                    : toCipher[plainLetter] >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decides the letters of the cipher word to be those of the plan word.
+     * @param cipherWord the cipher word
+     * @param plainWord a dictionary word that agrees
+     */
+    private void decide(byte[] cipherWord, byte[] plainWord) {
+        for (int i = 0; i < cipherWord.length; i++) {
+            if(toPlain[cipherWord[i]] < 0) {
+                toPlain[cipherWord[i]] = plainWord[i];
+                toCipher[plainWord[i]] = cipherWord[i];
+                decided[numDecided++] = cipherWord[i];
+            }
+        }
+    }
+
+    /**
+     * Undoes the letters decided since.
+     * @param numBefore the numDecided to go back to
+     */
+    private void undo(int numBefore) {
+        int cipherLetter;
+        while(numDecided > numBefore) {
+            cipherLetter = decided[--numDecided];
+            toCipher[toPlain[cipherLetter]] = -1;
+            toPlain[cipherLetter] = -1;
+        }
+    }
+
+    /**
+     * @param word a lower case word
+     * @return its letters 0 to 25
+     */
+    private static byte[] letters(String word) {
+        byte[] letters = new byte[word.length()];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (byte)(word.charAt(i) - 'a');
+        }
+        return letters;
+    }
+
+    /**
+     * Deciphers cipher texts with spaces, one a line from stdin, using dictionary.txt if there is one.
+     * @param args these values are not used.
+     */
+    public static void main(String[] args) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            WordPatternSolver aSolver = new WordPatternSolver(NGram.load("quadgrams.txt"), NGram.load("bigrams.txt"),
+                    WordPatternIndex.load());
+            String aLine;
+            while((aLine = in.readLine()) != null) {
+                if(aLine.isBlank()) {
+                    continue;
+                }
+                long startTime = System.nanoTime();
+                Solution aSolution = aSolver.solve(aLine.toLowerCase(Locale.ROOT));
+                long endtime = System.nanoTime();
+                System.out.printf("Time taken: %f seconds\n",((double)(endtime-startTime))/1000000000.0);
+                System.out.printf("key->%s<- bestWordCount->%d<- evaluations->%d<-\n",
+                        aSolution.keyString(), aSolution.getWordCount(), aSolution.getNumEvaluations());
+                System.out.printf("->%s<-\n", aSolution.getPlainText());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
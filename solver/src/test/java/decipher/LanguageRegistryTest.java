@@ -0,0 +1,71 @@
+package decipher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests ranking cipher texts against languages made from small NGrams.
+ */
+class LanguageRegistryTest {
+
+    /** The English the test language is counted from, not the text enciphered */
+    static final String ENGLISH = WordPatternSolverTest.PLAIN_TEXT + " international understanding requires"
+            + " considerable responsibility everywhere throughout government departments";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * @param name the language's name
+     * @param text its plan text, or null for random grams with every letter about as common
+     * @return a language with the COMMON_WORDS and its letter order worked out from the bigrams
+     */
+    private LanguageModel language(String name, String text) throws Exception {
+        Path languageDir = Files.createDirectories(dir.resolve(name));
+        // the files are written where TestNGrams puts them, the model loads them itself
+        if(text != null) {
+            TestNGrams.fromText(languageDir, text, 4);
+            TestNGrams.fromText(languageDir, text, 2);
+            return new LanguageModel(name, languageDir.resolve("4grams.txt").toString(),
+                    languageDir.resolve("2grams.txt").toString(), SubstitutionCipher.COMMON_WORDS, null);
+        }
+        TestNGrams.random(languageDir, 4, 2000, 1);
+        TestNGrams.random(languageDir, 2, 600, 2);
+        return new LanguageModel(name, languageDir.resolve("4grams-1.txt").toString(),
+                languageDir.resolve("2grams-2.txt").toString(), SubstitutionCipher.COMMON_WORDS, null);
+    }
+
+    /**
+     * @return a registry of a made up language then English
+     */
+    private LanguageRegistry registry() throws Exception {
+        LanguageRegistry aRegistry = new LanguageRegistry();
+        aRegistry.register(language("xx", null));
+        aRegistry.register(language("en", ENGLISH));
+        return aRegistry;
+    }
+
+    @Test
+    void englishRanksFirst() throws Exception {
+        String plainText = SolutionCacheTest.PLAIN_TEXT + " " + SolutionCacheTest.OTHER_TEXT;
+        String cipherText = new SubstitutionCipher().subsitute(plainText, SolutionCacheTest.randomKey(6));
+        List<LanguageRegistry.Candidate> candidates = registry().rank(cipherText);
+        assertEquals(2, candidates.size());
+        assertEquals("en", candidates.get(0).getLanguage().getName(), candidates.toString());
+        assertTrue(candidates.get(0).getDistance() < candidates.get(1).getDistance());
+    }
+
+    @Test
+    void solveNeedsACandidate() throws Exception {
+        LanguageRegistry aRegistry = registry();
+        assertThrows(IllegalArgumentException.class, () -> aRegistry.solve("qbuf", 0));
+        assertThrows(IllegalArgumentException.class, () -> aRegistry.solve("qbuf", -1));
+    }
+}
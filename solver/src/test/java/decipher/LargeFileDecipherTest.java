@@ -0,0 +1,117 @@
+package decipher;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests LargeFileDecipher's sample and chunked deciphering with small windows, no solving is done
+ * except for files with no letters, which are never solved.
+ */
+class LargeFileDecipherTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * @return a LargeFileDecipher mapping 7 bytes at a time in chunks of 5
+     */
+    private LargeFileDecipher smallWindows() throws Exception {
+        String plainText = WordPatternSolverTest.PLAIN_TEXT;
+        LargeFileDecipher aDecipher = new LargeFileDecipher(TestNGrams.fromText(dir, plainText, 4),
+                TestNGrams.fromText(dir, plainText, 2));
+        aDecipher.setMapWindow(7);
+        aDecipher.setChunkSize(5);
+        return aDecipher;
+    }
+
+    /**
+     * @param numLetters the number of letters
+     * @return letters a to z over and over, every third upper case, with punctuation between some
+     */
+    static String lettersAndPunctuation(int numLetters) {
+        StringBuilder text = new StringBuilder();
+        for (int n = 0; n < numLetters; n++) {
+            char aChar = (char)('a' + n%26);
+            text.append(n%3 == 0 ? Character.toUpperCase(aChar) : aChar);
+            if(n%5 == 4) {
+                text.append(n%2 == 0 ? ", " : ".\n");
+            }
+        }
+        return text.toString();
+    }
+
+    @Test
+    void noLettersIsCopied() throws Exception {
+        for (String text : new String[] {"", "12, 34!\n-- ?"}) {
+            Path cipherFile = Files.writeString(dir.resolve("cipher.txt"), text, StandardCharsets.ISO_8859_1);
+            Path plainFile = dir.resolve("plain.txt");
+            Solution aSolution = smallWindows().decipher(cipherFile, plainFile);
+            assertEquals(text, Files.readString(plainFile, StandardCharsets.ISO_8859_1));
+            assertFalse(aSolution.isConverged());
+            assertEquals("abcdefghijklmnopqrstuvwxyz", aSolution.keyString());
+        }
+    }
+
+    @Test
+    void caseAndPunctuationKeptAcrossWindows() throws Exception {
+        String plainText = lettersAndPunctuation(100);
+        short[] key = SolutionCacheTest.randomKey(3);
+        SubstitutionCipher cipher = new SubstitutionCipher();
+        // subsitute only changes lower case letters, so encipher each case on its own
+        StringBuilder cipherText = new StringBuilder();
+        for (char aChar : plainText.toCharArray()) {
+            if(Character.isUpperCase(aChar)) {
+                cipherText.append(cipher.subsitute(String.valueOf(Character.toLowerCase(aChar)), key).toUpperCase());
+            } else {
+                cipherText.append(cipher.subsitute(String.valueOf(aChar), key));
+            }
+        }
+        Path cipherFile = Files.writeString(dir.resolve("cipher.txt"), cipherText, StandardCharsets.ISO_8859_1);
+        Path plainFile = dir.resolve("plain.txt");
+        try (FileChannel in = FileChannel.open(cipherFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(plainFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            smallWindows().decipher(in, out, SolutionCacheTest.inverse(key));
+        }
+        assertEquals(plainText, Files.readString(plainFile, StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void spaceBetweenSampleRuns() throws Exception {
+        int numLetters = 320;
+        Path cipherFile = Files.writeString(dir.resolve("cipher.txt"), lettersAndPunctuation(numLetters),
+                StandardCharsets.ISO_8859_1);
+        LargeFileDecipher aDecipher = smallWindows();
+        // 16 runs of 2 letters spread through the file
+        aDecipher.setSampleLetters(32);
+        String sample;
+        try (FileChannel in = FileChannel.open(cipherFile, StandardOpenOption.READ)) {
+            assertEquals(numLetters, aDecipher.countLetters(in));
+            sample = aDecipher.sample(in, numLetters);
+        }
+        String[] runs = sample.split(" ", -1);
+        assertEquals(LargeFileDecipher.NUM_SAMPLE_RUNS, runs.length, sample);
+        int runStart;
+        for (int run = 0; run < runs.length; run++) {
+            runStart = (numLetters - 2)*run/(runs.length - 1);
+            assertEquals("" + (char)('a' + runStart%26) + (char)('a' + (runStart + 1)%26), runs[run], sample);
+        }
+
+        // the whole file is one run, so no spaces
+        aDecipher.setSampleLetters(numLetters);
+        try (FileChannel in = FileChannel.open(cipherFile, StandardOpenOption.READ)) {
+            sample = aDecipher.sample(in, numLetters);
+        }
+        assertEquals(numLetters, sample.length());
+        assertArrayEquals(lettersAndPunctuation(numLetters).toLowerCase().replaceAll("[^a-z]", "").getBytes(),
+                sample.getBytes());
+    }
+}
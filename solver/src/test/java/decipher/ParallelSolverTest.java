@@ -0,0 +1,74 @@
+package decipher;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that ParallelSolver's climbers use the random numbers given with setRandom.
+ */
+class ParallelSolverTest {
+
+    /** Enough to do a few climbs */
+    static final long MAX_EVALUATIONS = 50000;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * @param cipherText the cipher text to solve
+     * @param seed the seed of the random numbers
+     * @return the solution of a climber stopped at MAX_EVALUATIONS
+     */
+    private Solution solve(String cipherText, long seed) throws Exception {
+        String plainText = WordPatternSolverTest.PLAIN_TEXT;
+        try (ParallelSolver aSolver = new ParallelSolver(TestNGrams.fromText(dir, plainText, 4),
+                TestNGrams.fromText(dir, plainText, 2), 1)) {
+            aSolver.setRandom(new SplittableRandom(seed));
+            return aSolver.solve(cipherText, SolveHandle.withMaxEvaluations(MAX_EVALUATIONS));
+        }
+    }
+
+    @Test
+    void convergedOnlyWithEnoughWords() throws Exception {
+        // counting just t, some climbs map a cipher letter common enough to t and some do not,
+        // and one that does not can score better than one that does
+        String cipherText = SolverDaemonTest.randomLetters(2).substring(0, 280);
+        String plainText = WordPatternSolverTest.PLAIN_TEXT;
+        int numWordsTarget = SubstitutionCipher.numWordsTarget(cipherText);
+        try (ParallelSolver aSolver = new ParallelSolver(TestNGrams.fromText(dir, plainText, 4),
+                TestNGrams.fromText(dir, plainText, 2), 4)) {
+            aSolver.setWordMatcher(new WordMatcher(Arrays.asList("t")));
+            for (long seed = 0; seed < 20; seed++) {
+                aSolver.setRandom(new SplittableRandom(seed));
+                Solution aSolution = aSolver.solve(cipherText, SolveHandle.withMaxEvaluations(MAX_EVALUATIONS));
+                assertEquals(aSolution.getWordCount() >= numWordsTarget, aSolution.isConverged(),
+                        "seed " + seed + " " + aSolution.getWordCount() + " words");
+            }
+        }
+    }
+
+    @Test
+    void sameSeedSameSolve() throws Exception {
+        // random letters never converge, so every solve runs to the maximum
+        String cipherText = SolverDaemonTest.randomLetters(1).substring(0, 300);
+        Solution first = solve(cipherText, 42);
+        Solution second = solve(cipherText, 42);
+        assertArrayEquals(first.getKey(), second.getKey());
+        assertEquals(first.getScore(), second.getScore());
+        assertEquals(first.getNumEvaluations(), second.getNumEvaluations());
+        assertTrue(WordPatternSolverTest.isPermutation(first.getKey()));
+
+        boolean differs = false;
+        for (long seed = 43; seed < 48 && !differs; seed++) {
+            differs = !Arrays.equals(first.getKey(), solve(cipherText, seed).getKey());
+        }
+        assertTrue(differs, "other seeds climb elsewhere");
+    }
+}
@@ -0,0 +1,90 @@
+package decipher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks VectorScoringKernel gives exactly the same scores and swap deltas as ScalarScoringKernel,
+ * over random NGrams, cipher texts and maps. Needs --add-modules jdk.incubator.vector (see the pom).
+ */
+class ScoringKernelTest {
+
+    /** Cipher text lengths, giving gram counts that are and are not multiples of LANES */
+    static final int[] LENGTHS = {0, 3, 4, 5, 11, 12, 13, 37, 100, 333, 1000, 4001};
+
+    @TempDir
+    Path dir;
+
+    /**
+     * @param random picks the letters
+     * @return a random map of letters
+     */
+    static short[] randomMap(SplittableRandom random) {
+        short[] map = new short[26];
+        for (short letter = 0; letter < 26; letter++) {
+            map[letter] = letter;
+        }
+        for (int i = 25; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            short temp = map[i];
+            map[i] = map[j];
+            map[j] = temp;
+        }
+        return map;
+    }
+
+    /**
+     * @param random picks the letters
+     * @param length the number of bytes
+     * @return lower case letters with a few spaces, using only some of the letters
+     */
+    static byte[] randomText(SplittableRandom random, int length) {
+        int numLetters = random.nextInt(5, 27);
+        byte[] text = new byte[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = random.nextInt(10) == 0 ? (byte)' ' : (byte)('a' + random.nextInt(numLetters));
+        }
+        return text;
+    }
+
+    @Test
+    void vectorMatchesScalar() throws Exception {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "jdk.incubator.vector is not added");
+        assumeTrue(VectorScoringKernel.isSupported(), "no 256 bit vectors");
+        ScoringKernel scalar = new ScalarScoringKernel();
+        ScoringKernel vector = new VectorScoringKernel();
+        boolean notMultiple = false;
+        for (int gramLength : new int[] {2, 4}) {
+            for (long seed = 1; seed <= 3; seed++) {
+                NGram aNGram = TestNGrams.random(dir, gramLength, 2000, seed);
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int length : LENGTHS) {
+                    byte[] text = randomText(random, length);
+                    NGramHistogram histogram = new NGramHistogram(aNGram, text, 0, text.length);
+                    notMultiple |= histogram.getNumGrams() % ScoringKernel.LANES != 0;
+                    for (int n = 0; n < 3; n++) {
+                        short[] map = randomMap(random);
+                        String at = String.format("gram length %d seed %d text length %d map %d", gramLength, seed, length, n);
+                        assertEquals(scalar.score(histogram, map), vector.score(histogram, map), at);
+                        for (int i = 0; i < 26; i++) {
+                            for (int j = 0; j < 26; j++) {
+                                if(i != j) {
+                                    assertEquals(scalar.swapDelta(histogram, map, i, j),
+                                            vector.swapDelta(histogram, map, i, j), at + " swap " + i + " " + j);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(notMultiple, "some gram counts are not a multiple of LANES");
+    }
+}
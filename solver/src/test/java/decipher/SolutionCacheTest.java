@@ -0,0 +1,180 @@
+package decipher;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the SolutionCache with made up solutions, no solving is done.
+ */
+class SolutionCacheTest {
+
+    /** Longer than MIN_LETTERS */
+    static final String PLAIN_TEXT = "the quick brown fox jumps over the lazy dog and runs away";
+    /** Another plan text with a different pattern */
+    static final String OTHER_TEXT = "a stitch in time saves nine and a penny saved is a penny earned";
+
+    private final SubstitutionCipher cipher = new SubstitutionCipher();
+
+    /**
+     * @param seed picks the key
+     * @return a random key, plan letter to cipher letter
+     */
+    static short[] randomKey(long seed) {
+        short[] key = new short[26];
+        for (short letter = 0; letter < 26; letter++) {
+            key[letter] = letter;
+        }
+        Random random = new Random(seed);
+        for (int i = 25; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            short temp = key[i];
+            key[i] = key[j];
+            key[j] = temp;
+        }
+        return key;
+    }
+
+    /**
+     * @param key plan letter to cipher letter
+     * @return cipher letter to plan letter, the map a solve finds
+     */
+    static short[] inverse(short[] key) {
+        short[] map = new short[26];
+        for (short letter = 0; letter < 26; letter++) {
+            map[key[letter]] = letter;
+        }
+        return map;
+    }
+
+    /**
+     * Puts the plan text enciphered with the key in the cache as if it was solved.
+     * @return the cipher text
+     */
+    private String putSolved(SolutionCache cache, String plainText, short[] key) {
+        String cipherText = cipher.subsitute(plainText, key);
+        cache.put(cipherText, new Solution(inverse(key), -100, 5, plainText, 1000, true));
+        return cipherText;
+    }
+
+    @Test
+    void reKeyedTextIsAHit() {
+        SolutionCache cache = new SolutionCache();
+        putSolved(cache, PLAIN_TEXT, randomKey(1));
+
+        short[] otherKey = randomKey(2);
+        String cipherText = cipher.subsitute(PLAIN_TEXT, otherKey);
+        Solution aSolution = cache.get(cipherText);
+        assertNotNull(aSolution);
+        assertEquals(PLAIN_TEXT, aSolution.getPlainText());
+        assertEquals(PLAIN_TEXT, cipher.subsitute(cipherText, aSolution.getKey()));
+        assertEquals(0, aSolution.getNumEvaluations());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void shortTextIsNotCached() {
+        SolutionCache cache = new SolutionCache();
+        String plainText = "the cat sat on the mat";
+        putSolved(cache, plainText, randomKey(1));
+        assertEquals(0, cache.size());
+        assertNull(cache.get(cipher.subsitute(plainText, randomKey(2))));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void unconvergedOrWordlessIsNotCached() {
+        SolutionCache cache = new SolutionCache();
+        short[] key = randomKey(1);
+        String cipherText = cipher.subsitute(PLAIN_TEXT, key);
+        cache.put(cipherText, new Solution(inverse(key), -100, 5, PLAIN_TEXT, 1000, false));
+        cache.put(cipherText, new Solution(inverse(key), -100, 0, PLAIN_TEXT, 1000, true));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedIsDropped() {
+        SolutionCache cache = new SolutionCache(2);
+        String first = putSolved(cache, PLAIN_TEXT, randomKey(1));
+        String second = putSolved(cache, OTHER_TEXT, randomKey(2));
+        // use the first so the second is the least recently used
+        assertNotNull(cache.get(first));
+        putSolved(cache, PLAIN_TEXT + " again", randomKey(3));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(first));
+    }
+
+    @Test
+    void boundedByBytes() {
+        // no longer than the first, so dropping the first makes room
+        String third = PLAIN_TEXT.substring(0, PLAIN_TEXT.length() - " away".length());
+        // room for the first two patterns but not all three
+        long maxBytes = PLAIN_TEXT.length() + OTHER_TEXT.length() + 2*SolutionCache.ENTRY_OVERHEAD;
+        SolutionCache cache = new SolutionCache(100, maxBytes);
+        String first = putSolved(cache, PLAIN_TEXT, randomKey(1));
+        putSolved(cache, OTHER_TEXT, randomKey(2));
+        assertEquals(maxBytes, cache.getHeldBytes());
+        putSolved(cache, third, randomKey(3));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(first));
+        assertEquals(OTHER_TEXT.length() + third.length() + 2*SolutionCache.ENTRY_OVERHEAD, cache.getHeldBytes());
+
+        // a pattern bigger than the whole cache is not kept
+        SolutionCache small = new SolutionCache(100, PLAIN_TEXT.length());
+        putSolved(small, PLAIN_TEXT, randomKey(1));
+        assertEquals(0, small.size());
+        assertEquals(0, small.getHeldBytes());
+    }
+
+    @Test
+    void snapshotRoundTrip(@TempDir Path dir) throws Exception {
+        SolutionCache cache = new SolutionCache();
+        putSolved(cache, PLAIN_TEXT, randomKey(1));
+        putSolved(cache, OTHER_TEXT, randomKey(2));
+        Path file = dir.resolve("cache.snapshot");
+        cache.save(file);
+
+        SolutionCache loaded = new SolutionCache();
+        assertEquals(2, loaded.load(file));
+        assertEquals(2, loaded.size());
+        short[] key = randomKey(3);
+        Solution aSolution = loaded.get(cipher.subsitute(OTHER_TEXT, key));
+        assertNotNull(aSolution);
+        assertEquals(OTHER_TEXT, aSolution.getPlainText());
+        assertEquals(-100, aSolution.getScore());
+        assertEquals(5, aSolution.getWordCount());
+        // every cipher letter in the text maps back to its plan letter
+        short[] map = inverse(key);
+        for (char aChar : OTHER_TEXT.replace(" ", "").toCharArray()) {
+            int cipherLetter = key[aChar - 'a'];
+            assertEquals(map[cipherLetter], aSolution.getKey()[cipherLetter]);
+        }
+        assertEquals(0, new SolutionCache().load(dir.resolve("missing")));
+    }
+
+    @Test
+    void keyIsAPermutation() {
+        SolutionCache cache = new SolutionCache();
+        putSolved(cache, PLAIN_TEXT, randomKey(1));
+        short[] key = cache.get(cipher.subsitute(PLAIN_TEXT, randomKey(4))).getKey();
+        boolean[] used = new boolean[26];
+        for (short aLetter : key) {
+            used[aLetter] = true;
+        }
+        boolean[] all = new boolean[26];
+        Arrays.fill(all, true);
+        assertArrayEquals(all, used);
+    }
+}
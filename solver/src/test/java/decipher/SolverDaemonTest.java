@@ -0,0 +1,255 @@
+package decipher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnixDomainSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Starts a SolverDaemon with one worker on an ephemeral loopback port and talks to it over TCP.
+ */
+class SolverDaemonTest {
+
+    /** How long the test waits for the daemon, in milliseconds */
+    static final long WAIT_MS = 10000;
+
+    @TempDir
+    Path dir;
+
+    private SolverDaemon daemon;
+    private InetSocketAddress address;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @BeforeEach
+    void start() throws Exception {
+        String plainText = WordPatternSolverTest.PLAIN_TEXT;
+        daemon = new SolverDaemon(TestNGrams.fromText(dir, plainText, 4), TestNGrams.fromText(dir, plainText, 2), 1);
+        // long enough that only a cancel ends the slow solves before the test gives up
+        daemon.setLimits(Duration.ofMillis(WAIT_MS*3), SolveHandle.NO_LIMIT);
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            } catch (Exception e) {
+                // closed by the test
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while(daemon.getLocalAddress() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        address = (InetSocketAddress)daemon.getLocalAddress();
+        assertNotNull(address, "the daemon is listening");
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        for (Socket aSocket : sockets) {
+            aSocket.close();
+        }
+        daemon.close();
+    }
+
+    /**
+     * @return a new connection to the daemon, closed after the test
+     */
+    private Socket connect() throws Exception {
+        Socket aSocket = new Socket(address.getAddress(), address.getPort());
+        aSocket.setSoTimeout((int)WAIT_MS);
+        sockets.add(aSocket);
+        return aSocket;
+    }
+
+    /**
+     * Sends a request line without waiting for the answer.
+     */
+    private static void send(Socket aSocket, String request) throws Exception {
+        PrintWriter out = new PrintWriter(aSocket.getOutputStream(), false, StandardCharsets.UTF_8);
+        out.print(request + "\n");
+        out.flush();
+    }
+
+    /**
+     * @return the next answer line on the connection
+     */
+    private static String receive(Socket aSocket) throws Exception {
+        // one line at a time so nothing is read ahead of the answer
+        StringBuilder line = new StringBuilder();
+        int aByte;
+        while((aByte = aSocket.getInputStream().read()) >= 0 && aByte != '\n') {
+            line.append((char)aByte);
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return the answer to one request on a new connection
+     */
+    private String ask(String request) throws Exception {
+        try (Socket aSocket = new Socket(address.getAddress(), address.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(aSocket.getInputStream(), StandardCharsets.UTF_8))) {
+            aSocket.setSoTimeout((int)WAIT_MS);
+            send(aSocket, request);
+            return in.readLine();
+        }
+    }
+
+    /**
+     * Asks for health until the answer passes the test.
+     * @return the health answer that passed
+     */
+    private String awaitHealth(Predicate<String> test) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        String health = ask("{\"command\":\"health\"}");
+        while(!test.test(health) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            health = ask("{\"command\":\"health\"}");
+        }
+        assertTrue(test.test(health), health);
+        return health;
+    }
+
+    /**
+     * @param seed picks the letters
+     * @return random letters, their quadgrams are nearly all unknown so the solve never converges
+     */
+    static String randomLetters(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            letters.append((char)('a' + random.nextInt(26)));
+        }
+        return letters.toString();
+    }
+
+    @Test
+    void solvesAndReports() throws Exception {
+        SubstitutionCipher cipher = new SubstitutionCipher();
+        String cipherText = cipher.subsitute(WordPatternSolverTest.PLAIN_TEXT, SolutionCacheTest.randomKey(11));
+        Socket aSocket = connect();
+        send(aSocket, "{\"id\":\"first\",\"ciphertext\":\"" + cipherText + "\",\"maxEvaluations\":100000}");
+        String answer = receive(aSocket);
+        assertEquals("1", Json.getField(answer, "line"), answer);
+        assertEquals("first", Json.getField(answer, "id"));
+        assertNull(Json.getField(answer, "error"), answer);
+        assertNotNull(Json.getField(answer, "queuedMs"));
+        // the request lowers the daemon's limit, and the plan text is the cipher text under the key found
+        assertTrue(Long.parseLong(Json.getField(answer, "evaluations")) <= 100000 + SearchContext.CHECK_INTERVAL, answer);
+        short[] key = new short[26];
+        String keyString = Json.getField(answer, "key");
+        for (int letter = 0; letter < 26; letter++) {
+            key[letter] = (short)(keyString.charAt(letter) - 'a');
+        }
+        assertTrue(WordPatternSolverTest.isPermutation(key));
+        assertEquals(cipher.subsitute(cipherText, key), Json.getField(answer, "plaintext"));
+
+        String health = ask("{\"command\":\"health\"}");
+        assertEquals("ok", Json.getField(health, "status"));
+        assertEquals("1", Json.getField(health, "workers"));
+
+        String stats = ask("{\"command\":\"stats\"}");
+        assertEquals("1", Json.getField(stats, "requests"), stats);
+        assertEquals("0", Json.getField(stats, "rejected"));
+        assertEquals("0", Json.getField(stats, "errors"));
+    }
+
+    @Test
+    void busyThenCancelledOnDisconnect() throws Exception {
+        // one solving and a full queue behind it
+        List<Socket> waiting = new ArrayList<>();
+        for (int n = 0; n <= SolverDaemon.QUEUE_PER_WORKER; n++) {
+            Socket aSocket = connect();
+            send(aSocket, randomLetters(n));
+            waiting.add(aSocket);
+            int queued = n;
+            awaitHealth(health -> "1".equals(Json.getField(health, "busy"))
+                    && String.valueOf(queued).equals(Json.getField(health, "queued")));
+        }
+        Socket turnedAway = connect();
+        send(turnedAway, randomLetters(99));
+        assertEquals("busy", Json.getField(receive(turnedAway), "error"));
+
+        // resetting the connections cancels the solves long before their deadline
+        for (Socket aSocket : waiting) {
+            aSocket.setSoLinger(true, 0);
+            aSocket.close();
+        }
+        awaitHealth(health -> "0".equals(Json.getField(health, "busy"))
+                && "0".equals(Json.getField(health, "queued")));
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        String stats = ask("{\"command\":\"stats\"}");
+        while(!String.valueOf(waiting.size()).equals(Json.getField(stats, "cancelled"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            stats = ask("{\"command\":\"stats\"}");
+        }
+        assertEquals(String.valueOf(waiting.size()), Json.getField(stats, "cancelled"), stats);
+        assertEquals("1", Json.getField(stats, "rejected"));
+        assertEquals("0", Json.getField(stats, "errors"));
+    }
+
+    @Test
+    void halfClosedStillAnswered() throws Exception {
+        SubstitutionCipher cipher = new SubstitutionCipher();
+        String cipherText = cipher.subsitute(WordPatternSolverTest.PLAIN_TEXT, SolutionCacheTest.randomKey(12));
+        Socket aSocket = connect();
+        // like printf ... | nc -N
+        send(aSocket, "{\"ciphertext\":\"" + cipherText + "\",\"maxEvaluations\":100000}");
+        aSocket.shutdownOutput();
+        String answer = receive(aSocket);
+        assertNull(Json.getField(answer, "error"), answer);
+        assertNotNull(Json.getField(answer, "plaintext"));
+        assertEquals("", receive(aSocket), "no more answers");
+        assertEquals("0", Json.getField(ask("{\"command\":\"stats\"}"), "cancelled"));
+    }
+
+    @Test
+    void tooLongIsRefused() throws Exception {
+        Socket aSocket = connect();
+        // no end of line, the answer comes as soon as it is too long
+        char[] tooLong = new char[SolverDaemon.MAX_REQUEST_BYTES + 1];
+        Arrays.fill(tooLong, 'q');
+        PrintWriter out = new PrintWriter(aSocket.getOutputStream(), false, StandardCharsets.UTF_8);
+        out.print(tooLong);
+        out.flush();
+        assertEquals("{\"line\":1,\"error\":\"too long\"}", receive(aSocket));
+
+        // the rest of the line is skipped and the next is answered
+        send(aSocket, "qqqq");
+        send(aSocket, "{\"command\":\"health\"}");
+        assertEquals("ok", Json.getField(receive(aSocket), "status"));
+        assertEquals("1", Json.getField(ask("{\"command\":\"stats\"}"), "errors"));
+    }
+
+    @Test
+    void listensOnLoopbackOnly() {
+        assertThrows(IllegalArgumentException.class, () -> SolverDaemon.address("0.0.0.0:1234"));
+        assertThrows(IllegalArgumentException.class,
+                () -> daemon.serve(new InetSocketAddress(1234)));
+        assertTrue(((InetSocketAddress)SolverDaemon.address("127.0.0.1:1234")).getAddress().isLoopbackAddress());
+        assertTrue(((InetSocketAddress)SolverDaemon.address("1234")).getAddress().isLoopbackAddress());
+        assertTrue(SolverDaemon.address("unix:/tmp/solver.sock") instanceof UnixDomainSocketAddress);
+    }
+}
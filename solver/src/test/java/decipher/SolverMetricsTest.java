@@ -0,0 +1,41 @@
+package decipher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests what a seeded solve adds to the SolverMetrics.
+ */
+class SolverMetricsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void solveIsCounted() throws Exception {
+        String plainText = WordPatternSolverTest.PLAIN_TEXT;
+        SubstitutionCipher aSolver = new SubstitutionCipher(TestNGrams.fromText(dir, plainText, 4),
+                TestNGrams.fromText(dir, plainText, 2));
+        SolverMetrics metrics = new SolverMetrics();
+        aSolver.setMetrics(metrics);
+        aSolver.setRandom(new SplittableRandom(1));
+        String cipherText = aSolver.subsitute(plainText.replace(" ", ""), SolutionCacheTest.randomKey(9));
+
+        Solution aSolution = aSolver.solve(cipherText, SolveHandle.withMaxEvaluations(100000));
+        SolverMetrics.Snapshot aSnapshot = metrics.snapshot();
+        assertEquals(1, aSnapshot.getSolves());
+        assertTrue(aSnapshot.getEvaluations() > 0);
+        // every evaluation is added, not just those of whole blocks
+        assertEquals(aSolution.getNumEvaluations(), aSnapshot.getEvaluations());
+        assertTrue(aSnapshot.getAccepted() > 0);
+        assertTrue(aSnapshot.getAcceptanceRatio() > 0 && aSnapshot.getAcceptanceRatio() <= 1,
+                "acceptance " + aSnapshot.getAcceptanceRatio());
+        assertTrue(aSnapshot.getScoreSeconds() > 0);
+        assertTrue(aSnapshot.getWordCountSeconds() > 0);
+    }
+}
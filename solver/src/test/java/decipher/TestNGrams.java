@@ -0,0 +1,66 @@
+package decipher;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/**
+ * Makes small NGrams for the tests, quadgrams.txt and bigrams.txt are not in the repo.
+ */
+final class TestNGrams {
+
+    private TestNGrams() {
+    }
+
+    /**
+     * Counts the grams of the letters of a text (anything else is dropped) into a grams file and loads it.
+     * @param dir where the file is written
+     * @param text the plan text to count
+     * @param length the gram length, 4 for quadgrams
+     * @return the NGram
+     * @throws Exception if the file can not be written or read
+     */
+    static NGram fromText(Path dir, String text, int length) throws Exception {
+        String letters = text.toUpperCase(Locale.ROOT).replaceAll("[^A-Z]", "");
+        Map<String, Integer> counts = new TreeMap<>();
+        for (int i = 0; i + length <= letters.length(); i++) {
+            counts.merge(letters.substring(i, i + length), 1, Integer::sum);
+        }
+        Path file = dir.resolve(length + "grams.txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1))) {
+            for (Map.Entry<String, Integer> aCount : counts.entrySet()) {
+                out.println(aCount.getKey() + " " + aCount.getValue());
+            }
+        }
+        return new NGram(file.toString());
+    }
+
+    /**
+     * Writes a grams file of random grams with random counts and loads it.
+     * @param dir where the file is written
+     * @param length the gram length
+     * @param numGrams the number of grams given counts, the rest get the floor
+     * @param seed picks the grams and counts
+     * @return the NGram
+     * @throws Exception if the file can not be written or read
+     */
+    static NGram random(Path dir, int length, int numGrams, long seed) throws Exception {
+        SplittableRandom random = new SplittableRandom(seed);
+        Path file = dir.resolve(length + "grams-" + seed + ".txt");
+        char[] gram = new char[length];
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1))) {
+            for (int n = 0; n < numGrams; n++) {
+                for (int k = 0; k < length; k++) {
+                    gram[k] = (char)('A' + random.nextInt(26));
+                }
+                out.println(new String(gram) + " " + random.nextInt(1, 100000));
+            }
+        }
+        return new NGram(file.toString());
+    }
+}
@@ -0,0 +1,121 @@
+package decipher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the WordPatternIndex and the WordPatternSolver's search, with NGrams counted from the plan texts.
+ */
+class WordPatternSolverTest {
+
+    /** Everyday words with their spaces, most of them COMMON_WORDS */
+    static final String PLAIN_TEXT = "they would have said that there was no way to know what the people had done"
+            + " with their work but now we think they could see it";
+
+    @TempDir
+    Path dir;
+
+    private final SubstitutionCipher cipher = new SubstitutionCipher();
+
+    /**
+     * @param plainText the text to count the NGrams of
+     * @param index the dictionary
+     * @return a solver
+     */
+    private WordPatternSolver solver(String plainText, WordPatternIndex index) throws Exception {
+        return new WordPatternSolver(TestNGrams.fromText(dir, plainText, 4), TestNGrams.fromText(dir, plainText, 2), index);
+    }
+
+    /**
+     * @param key a map of letters
+     * @return true if no two letters map to the same letter
+     */
+    static boolean isPermutation(short[] key) {
+        boolean[] used = new boolean[26];
+        for (short aLetter : key) {
+            if(used[aLetter]) {
+                return false;
+            }
+            used[aLetter] = true;
+        }
+        return true;
+    }
+
+    @Test
+    void patterns() {
+        assertEquals("abca", WordPatternIndex.pattern("that"));
+        assertEquals("abca", WordPatternIndex.pattern("high"));
+        assertEquals("abcd", WordPatternIndex.pattern("with"));
+        assertEquals("abccd", WordPatternIndex.pattern("hello"));
+
+        WordPatternIndex index = new WordPatternIndex(Arrays.asList("that", "High", "with", "dead", "can't", "that"));
+        assertEquals(Arrays.asList("that", "high", "dead"), index.get("abca"));
+        assertEquals(Arrays.asList("with"), index.get("abcd"));
+        assertTrue(index.get("aaaa").isEmpty());
+        assertEquals(4, index.getNumWords());
+    }
+
+    @Test
+    void solvesSpacedTextWithKnownKey() throws Exception {
+        List<String> words = new ArrayList<>(Arrays.asList(PLAIN_TEXT.split(" ")));
+        words.addAll(SubstitutionCipher.COMMON_WORDS);
+        short[] key = SolutionCacheTest.randomKey(7);
+        String cipherText = cipher.subsitute(PLAIN_TEXT, key);
+
+        Solution aSolution = solver(PLAIN_TEXT, new WordPatternIndex(words)).solve(cipherText);
+        assertEquals(PLAIN_TEXT, aSolution.getPlainText());
+        assertTrue(isPermutation(aSolution.getKey()));
+        for (char aChar : PLAIN_TEXT.replace(" ", "").toCharArray()) {
+            assertEquals(aChar - 'a', aSolution.getKey()[key[aChar - 'a']]);
+        }
+    }
+
+    @Test
+    void backtracksToLettersThatAgree() throws Exception {
+        // the first candidates of that (high, dead) leave no candidate for hat,
+        // so only that and hat together match every word
+        String plainText = "that hat that hat";
+        WordPatternIndex index = new WordPatternIndex(Arrays.asList("high", "dead", "that", "the", "and", "hat"));
+        String cipherText = cipher.subsitute(plainText, SolutionCacheTest.randomKey(3));
+
+        Solution aSolution = solver(plainText, index).solve(cipherText);
+        assertEquals(plainText, aSolution.getPlainText());
+        assertTrue(isPermutation(aSolution.getKey()));
+    }
+
+    @Test
+    void climbsWhenNoWordMatches() throws Exception {
+        // every word is longer than any of the default words
+        String plainText = "international understanding requires considerable responsibility"
+                + " everywhere throughout government departments";
+        List<String> defaultWords = new ArrayList<>(SubstitutionCipher.COMMON_WORDS);
+        defaultWords.addAll(WordPatternIndex.SHORT_WORDS);
+        String cipherText = cipher.subsitute(plainText, SolutionCacheTest.randomKey(5));
+
+        NGram quadGram = TestNGrams.fromText(dir, plainText, 4);
+        WordPatternSolver aSolver = new WordPatternSolver(quadGram, TestNGrams.fromText(dir, plainText, 2),
+                new WordPatternIndex(defaultWords));
+        Solution aSolution = aSolver.solve(cipherText);
+        short[] key = aSolution.getKey();
+        assertTrue(isPermutation(key));
+        assertTrue(aSolution.getNumEvaluations() > 1, "the climb scored swaps");
+
+        // the climb stops at a map no swap improves
+        byte[] cipherBytes = cipherText.getBytes(StandardCharsets.ISO_8859_1);
+        NGramHistogram quadCounts = new NGramHistogram(quadGram, cipherBytes, 0, cipherBytes.length);
+        assertEquals(quadCounts.score(key), aSolution.getScore(), 1e-6);
+        for (int i = 0; i < 26; i++) {
+            for (int j = i + 1; j < 26; j++) {
+                assertTrue(quadCounts.swapDelta(key, i, j) <= 1e-9, "swapping " + i + " and " + j + " helps");
+            }
+        }
+    }
+}